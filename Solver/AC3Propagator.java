@@ -0,0 +1,61 @@
+/**
+ * Arc-oriented propagation: runs Node.ac3 from the decision variable. Root propagation is not performed, as in the
+ * original MAC solver.
+ */
+public class AC3Propagator implements Propagator {
+
+    private long calls = 0;
+    private long supportChecks = 0;
+    private long valuesDeleted = 0;
+
+
+    @Override
+    public boolean initialise(Node node) {
+        return true;
+    }
+
+
+    @Override
+    public boolean propagate(Node node, int var) {
+        calls++;
+        long checksBefore = node.getSupportChecks();
+        int trailBefore = node.getTrail().size();
+        boolean consistent = node.ac3(var);
+        supportChecks += node.getSupportChecks() - checksBefore;
+        valuesDeleted += node.getTrail().size() - trailBefore;
+        return consistent;
+    }
+
+
+    /**
+     * AC3 keeps no state between calls, so this is a fresh engine.
+     */
+    @Override
+    public Propagator copy() {
+        return new AC3Propagator();
+    }
+
+
+    @Override
+    public String getName() {
+        return "AC3";
+    }
+
+
+    @Override
+    public long getCalls() {
+        return calls;
+    }
+
+
+    @Override
+    public long getSupportChecks() {
+        return supportChecks;
+    }
+
+
+    @Override
+    public long getValuesDeleted() {
+        return valuesDeleted;
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+
+/**
+ * Value-oriented propagation in the style of AC-6. Every value a of every variable x keeps, for each neighbour y, one
+ * current support b in D(y), and sits in the support list of (y, b). When (y, b) is deleted, only the values in its
+ * support list look for a new support, resuming after b. The deletion queue is the node's trail itself: every value
+ * deleted by a decision or by propagation is pushed there and processed in order.
+ *
+ * Support lists are not restored on backtrack. A value and the support it was left on are always deleted in the same
+ * propagation, or the value first, so every value present after a backtrack still has a present support. Supports are
+ * no longer guaranteed to be the smallest, which is why the search for a new support wraps around D(y).
+ */
+public class AC6Propagator implements Propagator {
+
+    private static final int NIL = -1;
+
+    private BinaryCSP csp;
+
+    // an entry stands for a triple (x, a, y): entry = arcBase[arcId(x, y)] + a - lb(x)
+    private int[] arcBase;
+    private int[] entryArc;
+    private int[] next;
+    private int[] prev;
+    // heads[valueBase[y] + b - lb(y)] is the first entry supported by (y, b)
+    private int[] valueBase;
+    private int[] heads;
+
+    private long calls = 0;
+    private long supportChecks = 0;
+    private long valuesDeleted = 0;
+
+
+    /**
+     * Class constructor. Lays out the support lists for every arc of the CSP.
+     *
+     * @param csp instance of the binary CSP
+     */
+    public AC6Propagator(BinaryCSP csp) {
+        this.csp = csp;
+        int n = csp.getNoVariables();
+        int noArcs = csp.getNoArcs();
+        arcBase = new int[noArcs];
+        int noEntries = 0;
+        for (int arcId = 0; arcId < noArcs; arcId++) {
+            int x = csp.getArcFirst(arcId);
+            arcBase[arcId] = noEntries;
+            noEntries += csp.getUB(x) - csp.getLB(x) + 1;
+        }
+        entryArc = new int[noEntries];
+        next = new int[noEntries];
+        prev = new int[noEntries];
+        for (int arcId = 0; arcId < noArcs; arcId++) {
+            int end = arcId + 1 < noArcs ? arcBase[arcId + 1] : noEntries;
+            Arrays.fill(entryArc, arcBase[arcId], end, arcId);
+        }
+
+        valueBase = new int[n];
+        int noValues = 0;
+        for (int y = 0; y < n; y++) {
+            valueBase[y] = noValues;
+            noValues += csp.getUB(y) - csp.getLB(y) + 1;
+        }
+        heads = new int[noValues];
+    }
+
+
+    /**
+     * Copy constructor. The layout is shared, as it never changes, and the support lists are copied.
+     *
+     * @param other engine to copy, whose node's domains the lists hold supports for
+     */
+    public AC6Propagator(AC6Propagator other) {
+        this.csp = other.csp;
+        arcBase = other.arcBase;
+        entryArc = other.entryArc;
+        valueBase = other.valueBase;
+        next = other.next.clone();
+        prev = other.prev.clone();
+        heads = other.heads.clone();
+    }
+
+
+    /**
+     * Finds a first support for every value on every arc, deleting the values that have none, and propagates those
+     * deletions. This makes the root node arc consistent.
+     */
+    @Override
+    public boolean initialise(Node node) {
+        Arrays.fill(heads, NIL);
+        DomainStore domains = node.getDomains();
+        int start = node.getTrail().size();
+        long checksBefore = supportChecks;
+        for (int arcId = 0; arcId < csp.getNoArcs(); arcId++) {
+            int x = csp.getArcFirst(arcId);
+            int y = csp.getArcSecond(arcId);
+            BinaryConstraint c = csp.getConstraint(x, y);
+            for (int a = domains.minValue(x); a != DomainStore.NONE; a = domains.nextValue(x, a + 1)) {
+                int entry = arcBase[arcId] + a - csp.getLB(x);
+                supportChecks++;
+                int b = c.findSupport(x, a, domains.getWords(), domains.getOffset(y), 0);
+                if (b == DomainStore.NONE) {
+                    node.deleteValue(x, a);
+                    if (domains.isEmpty(x)) {
+                        node.increaseWeight(x, y);
+                        return finish(node, start, checksBefore, false);
+                    }
+                } else {
+                    link(entry, y, b);
+                }
+            }
+        }
+        return finish(node, start, checksBefore, processDeletions(node, start));
+    }
+
+
+    /**
+     * Processes the deletions recorded on the trail since the current decision level was entered.
+     */
+    @Override
+    public boolean propagate(Node node, int var) {
+        calls++;
+        PropagationEvent event = new PropagationEvent();
+        event.begin();
+        Trail trail = node.getTrail();
+        int trailBefore = trail.size();
+        long checksBefore = supportChecks;
+        boolean consistent = finish(node, trailBefore, checksBefore, processDeletions(node, trail.getLevelStart()));
+        event.finish(var, node.getDepth(), trail.size() - trailBefore, consistent);
+        return consistent;
+    }
+
+
+    /**
+     * Adds the values deleted since the trail held start entries, and the support checks made, to the counters of
+     * this propagator and of the node's search.
+     *
+     * @return consistent
+     */
+    private boolean finish(Node node, int start, long checksBefore, boolean consistent) {
+        int deleted = node.getTrail().size() - start;
+        valuesDeleted += deleted;
+        SearchMetrics metrics = node.getMetrics();
+        metrics.propagated(deleted, supportChecks - checksBefore);
+        if (!consistent) {
+            metrics.wipeout(node.getDepth());
+        }
+        return consistent;
+    }
+
+
+    /**
+     * Works through the trail from index start, which grows as new deletions are made, until every deleted value has
+     * had its support list handled.
+     *
+     * @return false if a domain was wiped out.
+     */
+    private boolean processDeletions(Node node, int start) {
+        Trail trail = node.getTrail();
+        DomainStore domains = node.getDomains();
+        long[] words = domains.getWords();
+        for (int k = start; k < trail.size(); k++) {
+            int y = trail.getVar(k);
+            int b = trail.getVal(k);
+            if (b == Trail.ASSIGNED) {
+                continue;
+            }
+            int yLB = csp.getLB(y);
+            int entry = heads[valueBase[y] + b - yLB];
+            while (entry != NIL) {
+                int following = next[entry];
+                int arcId = entryArc[entry];
+                int x = csp.getArcFirst(arcId);
+                int a = entry - arcBase[arcId] + csp.getLB(x);
+                // entries of values already deleted stay where they are; they are never consulted again while deleted
+                if (domains.contains(x, a)) {
+                    supportChecks++;
+                    int support = csp.getConstraint(x, y).findSupport(x, a, words, domains.getOffset(y), (b - yLB) >> 6);
+                    if (support == DomainStore.NONE) {
+                        node.deleteValue(x, a);
+                        if (domains.isEmpty(x)) {
+                            node.increaseWeight(x, y);
+                            return false;
+                        }
+                    } else {
+                        unlink(entry, y, b);
+                        link(entry, y, support);
+                    }
+                }
+                entry = following;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Adds entry to the support list of (y, b).
+     */
+    private void link(int entry, int y, int b) {
+        int head = valueBase[y] + b - csp.getLB(y);
+        prev[entry] = NIL;
+        next[entry] = heads[head];
+        if (heads[head] != NIL) {
+            prev[heads[head]] = entry;
+        }
+        heads[head] = entry;
+    }
+
+
+    /**
+     * Removes entry from the support list of (y, b).
+     */
+    private void unlink(int entry, int y, int b) {
+        int head = valueBase[y] + b - csp.getLB(y);
+        if (prev[entry] == NIL) {
+            heads[head] = next[entry];
+        } else {
+            next[prev[entry]] = next[entry];
+        }
+        if (next[entry] != NIL) {
+            prev[next[entry]] = prev[entry];
+        }
+    }
+
+
+    @Override
+    public Propagator copy() {
+        return new AC6Propagator(this);
+    }
+
+
+    @Override
+    public String getName() {
+        return "AC6";
+    }
+
+
+    @Override
+    public long getCalls() {
+        return calls;
+    }
+
+
+    @Override
+    public long getSupportChecks() {
+        return supportChecks;
+    }
+
+
+    @Override
+    public long getValuesDeleted() {
+        return valuesDeleted;
+    }
+}
@@ -33,4 +33,13 @@ public class ArcPair {
         ArcPair arcPair = (ArcPair) o;
         return ((firstVar == arcPair.firstVar && secondVar == arcPair.secondVar)) || ((firstVar ==arcPair.secondVar) && (secondVar == arcPair.firstVar));
     }
+
+
+    /**
+     * Symmetric in the two variables, to agree with equals.
+     */
+    @Override
+    public int hashCode() {
+        return Math.min(firstVar, secondVar) * 31 + Math.max(firstVar, secondVar);
+    }
 }
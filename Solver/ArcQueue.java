@@ -0,0 +1,85 @@
+/**
+ * Queue of directed arcs for AC3, identified by BinaryCSP.getArcId. A bitset over arc ids records which arcs are
+ * queued, so adding an arc that is already queued is a no-op; subclasses only decide the order arcs come out in, and
+ * allocate no more than that order needs.
+ */
+public abstract class ArcQueue {
+
+    // inQueue[arcId >> 6] has bit arcId set while arcId is queued
+    private long[] inQueue;
+    protected int size = 0;
+
+
+    /**
+     * Class constructor
+     *
+     * @param noArcs number of directed arcs of the CSP
+     */
+    protected ArcQueue(int noArcs) {
+        inQueue = new long[(noArcs >> 6) + 1];
+    }
+
+
+    /**
+     * Adds an arc to the queue, unless it is already queued.
+     *
+     * @return whether the arc was added
+     */
+    public boolean add(int arcId) {
+        if (contains(arcId)) {
+            return false;
+        }
+        inQueue[arcId >> 6] |= 1L << arcId;
+        push(arcId);
+        size++;
+        return true;
+    }
+
+
+    /**
+     * Removes and returns the next arc.
+     */
+    public int poll() {
+        int arcId = pop();
+        size--;
+        inQueue[arcId >> 6] &= ~(1L << arcId);
+        return arcId;
+    }
+
+
+    /**
+     * Stores an arc that is not queued yet; size still counts the arcs queued before it.
+     */
+    protected abstract void push(int arcId);
+
+
+    /**
+     * Takes out the next arc; size still counts it.
+     */
+    protected abstract int pop();
+
+
+    public boolean contains(int arcId) {
+        return (inQueue[arcId >> 6] & (1L << arcId)) != 0;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Empties the queue, e.g. after a wipeout left arcs in it.
+     */
+    public void clear() {
+        while (!isEmpty()) {
+            poll();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Runs a matrix of instances, algorithms and variable orderings, and records the node and revision counts and the
+ * distribution of solve times of each combination. Usage:
+ *
+ *   java BenchmarkRunner [-a fc,mac,fcrestart] [-s static,dynamic] [-f <solver flags>] [-w <warm-up runs>]
+ *                        [-W <warm-up ms>] [-n <runs>] [-o <csv file>] [-j <json file>] [-b <baseline csv>]
+ *                        [-T <time %>] [-N <nodes %>] [instance files]
+ *
+ * Every combination is solved through CSPSolver in this JVM: to warm up at least -w times (2) and for at least -W
+ * milliseconds (1000), as a few runs are not enough for the JIT to compile the search, and then -n times (5) measured,
+ * each run timed with System.nanoTime() from a fresh solver. Without instance files, every .csp file in the current
+ * directory is run. Algorithms are fc, fccbj (forward checking with conflict-directed backjumping), mac or fcrestart
+ * (forward checking with Luby restarts and the max-support value ordering), and orderings static, dynamic (smallest
+ * domain), domdeg or domwdeg. -f passes further flags to every solver, e.g. "-r -p ac6".
+ *
+ * With -b, the results are compared with a CSV file written by an earlier run. A combination regresses if its answer
+ * (SAT or UNSAT) differs from the baseline's, if it explores more than -N percent more nodes (0 by default: any
+ * increase), or if its median time is more than -T percent (25 by default) and MIN_TIME_DELTA above the baseline's.
+ * The runner then exits with status 1.
+ */
+public class BenchmarkRunner {
+
+    public static final String CSV_HEADER =
+            "instance,algorithm,ordering,satisfiable,nodes,revisions,runs,min_ms,p50_ms,p90_ms,max_ms,mean_ms";
+
+    private static final int DEFAULT_WARM_UP = 2;
+    // warm-up goes on for at least this long, in milliseconds, so that the JIT has compiled the search
+    private static final long DEFAULT_WARM_UP_TIME = 1000;
+    private static final int DEFAULT_RUNS = 5;
+    private static final double DEFAULT_TIME_THRESHOLD = 25;
+    private static final double DEFAULT_NODE_THRESHOLD = 0;
+    // median times closer than this to the baseline's, in milliseconds, are never a regression: timer noise
+    private static final double MIN_TIME_DELTA = 1.0;
+
+    private List<String> algorithms = Arrays.asList("fc", "mac", "fcrestart");
+    private List<String> orderings = Arrays.asList("static", "dynamic");
+    private List<String> extraFlags = new ArrayList<>();
+    private int warmUp = DEFAULT_WARM_UP;
+    private long warmUpTime = DEFAULT_WARM_UP_TIME;
+    private int runs = DEFAULT_RUNS;
+
+
+    /**
+     * Measurements of one combination of instance, algorithm and ordering.
+     */
+    static class Result {
+        String instance;
+        String algorithm;
+        String ordering;
+        boolean satisfiable;
+        long nodes;
+        long revisions;
+        // milliseconds, sorted
+        double[] times;
+
+        String key() {
+            return instance + "," + algorithm + "," + ordering;
+        }
+
+        /**
+         * @return the nearest-rank percentile of the times.
+         */
+        double percentile(double p) {
+            int rank = (int) Math.ceil(p / 100 * times.length);
+            return times[Math.max(rank, 1) - 1];
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double time : times) {
+                sum += time;
+            }
+            return sum / times.length;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f", key(),
+                    satisfiable ? "SAT" : "UNSAT", nodes, revisions, times.length, times[0], percentile(50),
+                    percentile(90), times[times.length - 1], mean());
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"instance\": %s, \"algorithm\": %s, \"ordering\": %s, "
+                            + "\"satisfiable\": %b, \"nodes\": %d, \"revisions\": %d, \"runs\": %d, "
+                            + "\"minMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"maxMs\": %.3f, \"meanMs\": %.3f}",
+                    Json.quote(instance), Json.quote(algorithm), Json.quote(ordering), satisfiable, nodes,
+                    revisions, times.length, times[0], percentile(50), percentile(90), times[times.length - 1],
+                    mean());
+        }
+    }
+
+
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String csvFile = null;
+        String jsonFile = null;
+        String baselineFile = null;
+        double timeThreshold = DEFAULT_TIME_THRESHOLD;
+        double nodeThreshold = DEFAULT_NODE_THRESHOLD;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            String arg = args[i++];
+            for (int j = 1; j < arg.length(); j++) {
+                char flag = arg.charAt(j);
+                if (i >= args.length) {
+                    System.err.println("ParseCmdLine: -" + flag + " requires a value");
+                    System.exit(2);
+                }
+                String value = args[i++];
+                try {
+                    switch (flag) {
+                        case 'a':
+                            runner.algorithms = Arrays.asList(value.split(","));
+                            break;
+                        case 's':
+                            runner.orderings = Arrays.asList(value.split(","));
+                            break;
+                        case 'f':
+                            runner.extraFlags = Arrays.asList(value.trim().split("\\s+"));
+                            break;
+                        case 'w':
+                            runner.warmUp = Integer.parseInt(value);
+                            break;
+                        case 'W':
+                            runner.warmUpTime = Long.parseLong(value);
+                            break;
+                        case 'n':
+                            runner.runs = Integer.parseInt(value);
+                            break;
+                        case 'o':
+                            csvFile = value;
+                            break;
+                        case 'j':
+                            jsonFile = value;
+                            break;
+                        case 'b':
+                            baselineFile = value;
+                            break;
+                        case 'T':
+                            timeThreshold = Double.parseDouble(value);
+                            break;
+                        case 'N':
+                            nodeThreshold = Double.parseDouble(value);
+                            break;
+                        default:
+                            System.err.println("ParseCmdLine: illegal option " + flag);
+                            System.exit(2);
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("ParseCmdLine: -" + flag + " requires a number");
+                    System.exit(2);
+                }
+            }
+        }
+
+        try {
+            ArrayList<String> files = new ArrayList<>(Arrays.asList(args).subList(i, args.length));
+            if (files.isEmpty()) {
+                try (DirectoryStream<Path> csps = Files.newDirectoryStream(Paths.get("."), "*.csp")) {
+                    for (Path csp : csps) {
+                        files.add(csp.getFileName().toString());
+                    }
+                }
+                Collections.sort(files);
+            }
+            // read the baseline first, so that a missing file is reported before the runs rather than after
+            HashMap<String, Result> baseline = baselineFile == null ? null : readCsv(baselineFile);
+
+            ArrayList<Result> results = runner.run(files);
+            if (csvFile != null) {
+                writeCsv(results, csvFile);
+            }
+            if (jsonFile != null) {
+                writeJson(results, jsonFile);
+            }
+            if (baseline != null && compare(results, baseline, timeThreshold, nodeThreshold) > 0) {
+                System.exit(1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e);
+            System.exit(2);
+        }
+    }
+
+
+    /**
+     * Runs every combination of the given instances with the algorithms and orderings, printing each result.
+     */
+    public ArrayList<Result> run(List<String> files) throws IOException {
+        ArrayList<Result> results = new ArrayList<>();
+        System.out.println(String.format("%-16s %-9s %-8s %-6s %12s %14s %10s %10s %10s", "instance", "alg",
+                "ordering", "", "nodes", "revisions", "min ms", "p50 ms", "p90 ms"));
+        for (String file : files) {
+            BinaryCSP csp = CSPSolver.read(file);
+            String instance = Paths.get(file).getFileName().toString().replaceFirst("\\.b?csp$", "");
+            for (String algorithm : algorithms) {
+                for (String ordering : orderings) {
+                    Result result = measure(csp, instance, algorithm, ordering);
+                    results.add(result);
+                    System.out.println(String.format(Locale.ROOT, "%-16s %-9s %-8s %-6s %12d %14d %10.3f %10.3f %10.3f",
+                            instance, algorithm, ordering, result.satisfiable ? "SAT" : "UNSAT", result.nodes,
+                            result.revisions, result.times[0], result.percentile(50), result.percentile(90)));
+                }
+            }
+        }
+        return results;
+    }
+
+
+    private Result measure(BinaryCSP csp, String instance, String algorithm, String ordering) {
+        ArrayList<String> flags = new ArrayList<>(extraFlags);
+        if (algorithm.equals("mac")) {
+            flags.add("-m");
+        } else if (algorithm.equals("fccbj")) {
+            flags.add("-j");
+        } else if (algorithm.equals("fcrestart")) {
+            flags.addAll(Arrays.asList("-R", "luby", "-v", "maxsupport"));
+        } else if (!algorithm.equals("fc")) {
+            throw new IllegalArgumentException("unknown algorithm " + algorithm);
+        }
+        if (ordering.equals("dynamic")) {
+            flags.add("-d");
+        } else if (ordering.equals("domdeg") || ordering.equals("domwdeg")) {
+            flags.add("-D");
+            flags.add(ordering);
+        } else if (!ordering.equals("static")) {
+            throw new IllegalArgumentException("unknown ordering " + ordering);
+        }
+        CSPSolver solver = new CSPSolver(SolverOptions.parse(flags.toArray(new String[0])));
+
+        long warmUpEnd = System.currentTimeMillis() + warmUpTime;
+        for (int k = 0; k < warmUp || (warmUp > 0 && System.currentTimeMillis() < warmUpEnd); k++) {
+            solver.solve(csp);
+        }
+        Result result = new Result();
+        result.instance = instance;
+        result.algorithm = algorithm;
+        result.ordering = ordering;
+        result.times = new double[runs];
+        long[] nodes = new long[runs];
+        long[] revisions = new long[runs];
+        for (int k = 0; k < runs; k++) {
+            // so that garbage left by the previous run is not collected during this one
+            System.gc();
+            long start = System.nanoTime();
+            SolverResult outcome = solver.solve(csp);
+            result.times[k] = (System.nanoTime() - start) / 1e6;
+            result.satisfiable = outcome.isSatisfiable();
+            nodes[k] = outcome.getNodeCount();
+            revisions[k] = outcome.getRevisionCount();
+        }
+        Arrays.sort(result.times);
+        // the counts only vary between runs for the parallel search
+        Arrays.sort(nodes);
+        Arrays.sort(revisions);
+        result.nodes = nodes[runs / 2];
+        result.revisions = revisions[runs / 2];
+        return result;
+    }
+
+
+    /**
+     * Prints how each result compares with the baseline.
+     * @return the number of regressions.
+     */
+    static int compare(List<Result> results, HashMap<String, Result> baseline, double timeThreshold,
+                       double nodeThreshold) {
+        int regressions = 0;
+        System.out.println("\nComparison with the baseline (time threshold " + timeThreshold + "%, node threshold "
+                + nodeThreshold + "%):");
+        for (Result result : results) {
+            Result base = baseline.get(result.key());
+            if (base == null) {
+                System.out.println("  " + result.key() + ": not in the baseline");
+                continue;
+            }
+            ArrayList<String> problems = new ArrayList<>();
+            // a different answer is wrong in one of the two runs, however the nodes and times compare
+            if (result.satisfiable != base.satisfiable) {
+                problems.add("answer " + (base.satisfiable ? "SAT" : "UNSAT") + " -> "
+                        + (result.satisfiable ? "SAT" : "UNSAT"));
+            }
+            if (result.nodes > base.nodes * (1 + nodeThreshold / 100)) {
+                problems.add("nodes " + base.nodes + " -> " + result.nodes);
+            }
+            double time = result.percentile(50);
+            double baseTime = base.percentile(50);
+            if (time > baseTime * (1 + timeThreshold / 100) && time - baseTime > MIN_TIME_DELTA) {
+                problems.add(String.format(Locale.ROOT, "median time %.3fms -> %.3fms", baseTime, time));
+            }
+            if (!problems.isEmpty()) {
+                regressions++;
+                System.out.println("  REGRESSION " + result.key() + ": " + String.join(", ", problems));
+            } else {
+                System.out.println(String.format(Locale.ROOT, "  ok %s: nodes %d -> %d, median time %.3fms -> %.3fms",
+                        result.key(), base.nodes, result.nodes, baseTime, time));
+            }
+        }
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+        return regressions;
+    }
+
+
+    static void writeCsv(List<Result> results, String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            out.println(CSV_HEADER);
+            for (Result result : results) {
+                out.println(result.toCsv());
+            }
+        }
+    }
+
+
+    static void writeJson(List<Result> results, String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            out.println("[");
+            for (int k = 0; k < results.size(); k++) {
+                out.println("  " + results.get(k).toJson() + (k + 1 < results.size() ? "," : ""));
+            }
+            out.println("]");
+        }
+    }
+
+
+    /**
+     * Reads results written by writeCsv. Only the counts and the median time are kept; the median stands in for
+     * every time.
+     */
+    static HashMap<String, Result> readCsv(String file) throws IOException {
+        HashMap<String, Result> results = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith("instance,algorithm,ordering,")) {
+                throw new IOException(file + " is not a benchmark CSV file");
+            }
+            List<String> columns = Arrays.asList(header.split(","));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    Result result = new Result();
+                    result.instance = fields[0];
+                    result.algorithm = fields[1];
+                    result.ordering = fields[2];
+                    result.satisfiable = fields[columns.indexOf("satisfiable")].equals("SAT");
+                    result.nodes = Long.parseLong(fields[columns.indexOf("nodes")]);
+                    result.revisions = Long.parseLong(fields[columns.indexOf("revisions")]);
+                    result.times = new double[]{Double.parseDouble(fields[columns.indexOf("p50_ms")])};
+                    results.put(result.key(), result);
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ": malformed line: " + line);
+                }
+            }
+        }
+        return results;
+    }
+}
@@ -3,12 +3,144 @@ import java.util.* ;
 public final class BinaryCSP {
   private int[][] domainBounds ;
   private ArrayList<BinaryConstraint> constraints ;
+  // constraintMatrix[i][j] holds the constraint with scope {i, j}, or null if i and j are unconstrained
+  private BinaryConstraint[][] constraintMatrix ;
+  // neighbours[i] holds the variables sharing a constraint with i, in order of first appearance
+  private int[][] neighbours ;
+  // arcIds[i][j] numbers the directed arc (i, j) from 0, or is -1 if i and j are unconstrained
+  private int[][] arcIds ;
+  private int noArcs ;
+  // arcFirst[id] and arcSecond[id] are i and j for the arc (i, j) with that id
+  private int[] arcFirst ;
+  private int[] arcSecond ;
+  // excluded[i] holds the values between the bounds of i that are not in its domain, as a bitset offset by the lower
+  // bound, or excluded is null if every domain is the whole interval
+  private long[][] excluded ;
+  // number of constraints merged into an earlier one on the same scope
+  private int noDuplicates ;
   
   public BinaryCSP(int[][] db, ArrayList<BinaryConstraint> c) {
     domainBounds = db ;
     constraints = c ;
+    for (BinaryConstraint bc : constraints)
+      bc.compile(getLB(bc.getFirstVar()), getUB(bc.getFirstVar()),
+                 getLB(bc.getSecondVar()), getUB(bc.getSecondVar())) ;
+    buildIndex() ;
+  }
+
+  /**
+   * Creates a CSP whose domains may leave out values between their bounds, e.g. as reduced by Preprocessor.
+   *
+   * @param excluded one bitset per variable, in the word layout of BinaryConstraint.wordsFor, of the values left out
+   */
+  public BinaryCSP(int[][] db, ArrayList<BinaryConstraint> c, long[][] excluded) {
+    this(db, c) ;
+    this.excluded = excluded ;
+  }
+
+  /**
+   * Builds the per-variable neighbour lists and the (i, j) -> constraint lookup once, at load time, so that
+   * the solvers never have to scan the whole constraint list.
+   * If the input lists more than one constraint on the same scope, they are merged into one, in the orientation of
+   * the first, which allows only the pairs allowed by all of them; the constraint list then holds the merged one
+   * in place of the first.
+   */
+  private void buildIndex() {
+    int n = domainBounds.length ;
+    constraintMatrix = new BinaryConstraint[n][n] ;
+    arcIds = new int[n][n] ;
+    for (int[] row : arcIds)
+      Arrays.fill(row, -1) ;
+    noArcs = 0 ;
+    ArrayList<ArrayList<Integer>> adjacency = new ArrayList<ArrayList<Integer>>() ;
+    for (int i = 0; i < n; i++)
+      adjacency.add(new ArrayList<Integer>()) ;
+    noDuplicates = 0 ;
+    for (BinaryConstraint bc : constraints) {
+      int v1 = bc.getFirstVar() ;
+      int v2 = bc.getSecondVar() ;
+      BinaryConstraint first = constraintMatrix[v1][v2] ;
+      if (first == null) {
+        constraintMatrix[v1][v2] = bc ;
+        constraintMatrix[v2][v1] = bc ;
+        arcIds[v1][v2] = noArcs++ ;
+        arcIds[v2][v1] = noArcs++ ;
+        adjacency.get(v1).add(v2) ;
+        adjacency.get(v2).add(v1) ;
+        continue ;
+      }
+      noDuplicates++ ;
+      BinaryConstraint merged = intersect(first, bc) ;
+      constraintMatrix[v1][v2] = merged ;
+      constraintMatrix[v2][v1] = merged ;
+    }
+    if (noDuplicates > 0) {
+      ArrayList<BinaryConstraint> indexed = new ArrayList<BinaryConstraint>() ;
+      boolean[][] listed = new boolean[n][n] ;
+      for (BinaryConstraint bc : constraints) {
+        int v1 = bc.getFirstVar() ;
+        int v2 = bc.getSecondVar() ;
+        if (!listed[v1][v2]) {
+          listed[v1][v2] = true ;
+          listed[v2][v1] = true ;
+          indexed.add(constraintMatrix[v1][v2]) ;
+        }
+      }
+      constraints = indexed ;
+    }
+    arcFirst = new int[noArcs] ;
+    arcSecond = new int[noArcs] ;
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        if (arcIds[i][j] >= 0) {
+          arcFirst[arcIds[i][j]] = i ;
+          arcSecond[arcIds[i][j]] = j ;
+        }
+    neighbours = new int[n][] ;
+    for (int i = 0; i < n; i++) {
+      ArrayList<Integer> adj = adjacency.get(i) ;
+      neighbours[i] = new int[adj.size()] ;
+      for (int k = 0; k < adj.size(); k++)
+        neighbours[i][k] = adj.get(k) ;
+    }
   }
   
+  /**
+   * @return a constraint on the scope of first, in its orientation, allowing the pairs that both constraints allow.
+   */
+  private BinaryConstraint intersect(BinaryConstraint first, BinaryConstraint other) {
+    int x = first.getFirstVar() ;
+    int y = first.getSecondVar() ;
+    ArrayList<BinaryTuple> tuples = new ArrayList<BinaryTuple>() ;
+    for (BinaryTuple t : first.getTuples())
+      if (other.allows(x, t.getFirstVal(), t.getSecondVal()))
+        tuples.add(t) ;
+    BinaryConstraint merged = new BinaryConstraint(x, y, tuples) ;
+    merged.compile(getLB(x), getUB(x), getLB(y), getUB(y)) ;
+    return merged ;
+  }
+
+  /**
+   * Rough number of bytes held by this instance, e.g. for a memory budget: the support rows of the constraints,
+   * which dominate, and the n x n index. Tuples built later on demand by getTuples() are not counted.
+   */
+  public long estimateBytes() {
+    int n = domainBounds.length ;
+    // constraint references and arc ids, plus array headers
+    long bytes = 8L * n * n + 64L * n ;
+    for (BinaryConstraint bc : constraints) {
+      int v1 = bc.getFirstVar() ;
+      int v2 = bc.getSecondVar() ;
+      long rows1 = getUB(v1) - getLB(v1) + 1 ;
+      long rows2 = getUB(v2) - getLB(v2) + 1 ;
+      // one row of words per value, each with an array header
+      bytes += rows1 * (16 + 8L * BinaryConstraint.wordsFor(getLB(v2), getUB(v2))) ;
+      bytes += rows2 * (16 + 8L * BinaryConstraint.wordsFor(getLB(v1), getUB(v1))) ;
+      bytes += 64 ;
+    }
+    return bytes ;
+  }
+
   public String toString() {
     StringBuffer result = new StringBuffer() ;
     result.append("CSP:\n") ;
@@ -30,10 +162,76 @@ public final class BinaryCSP {
   public int getUB(int varIndex) {
     return domainBounds[varIndex][1] ;
   }
+
+  /**
+   * @return whether val is in the initial domain of varIndex: between its bounds, and not left out.
+   */
+  public boolean inDomain(int varIndex, int val) {
+    if (val < getLB(varIndex) || val > getUB(varIndex))
+      return false ;
+    if (excluded == null)
+      return true ;
+    int bit = val - getLB(varIndex) ;
+    return (excluded[varIndex][bit >> 6] & (1L << bit)) == 0 ;
+  }
   
+  /**
+   * @return the constraints, one per scope: those listed more than once on a scope have been merged.
+   */
   public ArrayList<BinaryConstraint> getConstraints() {
     return constraints ;
   }
 
+  /**
+   * @return the number of constraints of the input merged into an earlier one on the same scope.
+   */
+  public int getNoDuplicates() {
+    return noDuplicates ;
+  }
+
+  /**
+   * @return the constraint with scope {i, j}, or null if there is none. O(1).
+   */
+  public BinaryConstraint getConstraint(int i, int j) {
+    return constraintMatrix[i][j] ;
+  }
+
+  /**
+   * @return the id of the directed arc (i, j), in 0 .. getNoArcs() - 1, or -1 if there is no constraint on {i, j}.
+   */
+  public int getArcId(int i, int j) {
+    return arcIds[i][j] ;
+  }
+
+  /**
+   * @return the id of the scope {i, j}, shared by the arcs (i, j) and (j, i), in 0 .. getNoArcs() / 2 - 1, or -1 if
+   * there is no constraint on {i, j}.
+   */
+  public int getScopeId(int i, int j) {
+    return arcIds[i][j] >> 1 ;
+  }
+
+  public int getArcFirst(int arcId) {
+    return arcFirst[arcId] ;
+  }
+
+  public int getArcSecond(int arcId) {
+    return arcSecond[arcId] ;
+  }
+
+  /**
+   * @return the number of directed arcs, i.e. twice the number of constrained scopes.
+   */
+  public int getNoArcs() {
+    return noArcs ;
+  }
+
+  /**
+   * @return the variables that share a constraint with varIndex. The array must not be modified.
+   */
+  public int[] getNeighbours(int varIndex) {
+    return neighbours[varIndex] ;
+  }
+
 
 }
@@ -0,0 +1,71 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Compiles a .csp file into the compact binary format read by CompiledCSPReader, so that instances which are solved
+ * over and over are tokenised only once.
+ *
+ * File format, big-endian:
+ * int magic ("BCSP"), int version
+ * int n, then n pairs of ints <lb>, <ub>
+ * int number of constraints, then for each constraint:
+ * int <varno>, int <varno>, then one relation row per value of the first variable, lb first, each row being
+ * BinaryConstraint.wordsFor(lb, ub) longs over the second variable's domain, bit k standing for lb + k.
+ */
+public final class BinaryCSPCompiler {
+
+    public static final int MAGIC = 0x42435350;
+    public static final int VERSION = 1;
+
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java BinaryCSPCompiler <file.csp> [<file.bcsp>]");
+            return;
+        }
+        String out = args.length == 2 ? args[1] : args[0].replaceFirst("\\.csp$", "") + ".bcsp";
+        try {
+            BinaryCSP csp = new BinaryCSPReader().readBinaryCSP(args[0]);
+            compile(csp, out);
+            System.out.println("Wrote " + out);
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+
+    /**
+     * Writes a CSP in the binary format.
+     *
+     * @param csp instance to write
+     * @param fn  name of the output file
+     */
+    public static void compile(BinaryCSP csp, String fn) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fn), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int n = csp.getNoVariables();
+            out.writeInt(n);
+            for (int var = 0; var < n; var++) {
+                out.writeInt(csp.getLB(var));
+                out.writeInt(csp.getUB(var));
+            }
+            out.writeInt(csp.getConstraints().size());
+            for (BinaryConstraint c : csp.getConstraints()) {
+                int first = c.getFirstVar();
+                int second = c.getSecondVar();
+                out.writeInt(first);
+                out.writeInt(second);
+                int words = BinaryConstraint.wordsFor(csp.getLB(second), csp.getUB(second));
+                for (int val = csp.getLB(first); val <= csp.getUB(first); val++) {
+                    long[] row = c.getSupports(first, val);
+                    for (int w = 0; w < words; w++) {
+                        out.writeLong(row[w]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,13 +1,24 @@
 import java.io.* ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.channels.ReadableByteChannel ;
+import java.nio.file.Paths ;
+import java.nio.file.StandardOpenOption ;
 import java.util.* ;
 
 /**
  * A reader tailored for binary extensional CSPs.
- * It is created from a FileReader and a StreamTokenizer
+ * It streams the file through a fixed byte buffer and parses integers straight from the bytes. Tuples go directly
+ * into the support rows of each constraint, so no BinaryTuple objects are created.
  */
 public final class BinaryCSPReader {
-  private FileReader inFR ;
-  private StreamTokenizer in ;
+  private static final int BUFFER_SIZE = 1 << 16 ;
+
+  private String fileName ;
+  private ReadableByteChannel channel ;
+  private ByteBuffer buffer ;
+  // current line, for error messages
+  private int line ;
 
   /**
    * Main (for testing)
@@ -18,7 +29,10 @@ public final class BinaryCSPReader {
       return ;
     }
     BinaryCSPReader reader = new BinaryCSPReader() ;
-	  System.out.println(reader.readBinaryCSP(args[0])) ;
+    try {
+      System.out.println(reader.readBinaryCSP(args[0])) ;
+    }
+    catch (IOException e) {System.out.println(e);}
   }
 
   /**
@@ -31,71 +45,167 @@ public final class BinaryCSPReader {
    * c(<varno>, <varno>)
    * binary tuples
    * <domain val>, <domain val>
+   * Anything from // to the end of a line is a comment.
+   *
+   * @throws CSPFormatException if the file does not follow this format, with the offending line number
+   * @throws IOException if the file cannot be read
    */
-  public BinaryCSP readBinaryCSP(String fn) {
+  public BinaryCSP readBinaryCSP(String fn) throws IOException {
+    try (FileChannel fc = FileChannel.open(Paths.get(fn), StandardOpenOption.READ)) {
+      return readBinaryCSP(fn, fc) ;
+    }
+  }
+
+  /**
+   * Reads a CSP in the same format from any channel, e.g. one over text held in memory. The channel is not closed.
+   *
+   * @param name name of the source, for error messages
+   */
+  public BinaryCSP readBinaryCSP(String name, ReadableByteChannel in) throws IOException {
+    fileName = name ;
+    line = 1 ;
+    buffer = ByteBuffer.allocate(BUFFER_SIZE) ;
+    buffer.flip() ;
     try {
-      inFR = new FileReader(fn) ;
-      in = new StreamTokenizer(inFR) ;
-      in.ordinaryChar('(') ;
-      in.ordinaryChar(')') ;
-      in.nextToken() ;                                         // n
-      int n = (int)in.nval ;
+      channel = in ;
+      int n = readInt("number of variables") ;
+      if (n < 0)
+        throw error("negative number of variables") ;
       int[][] domainBounds = new int[n][2] ;
       for (int i = 0; i < n; i++) {
-	      in.nextToken() ;                                  // ith ub
-	      domainBounds[i][0] = (int)in.nval ;
-		    in.nextToken() ;                                   // ','
-		    in.nextToken() ;
-	      domainBounds[i][1] = (int)in.nval ;
+        domainBounds[i][0] = readInt("lower bound of var " + i) ;
+        expect(',') ;
+        domainBounds[i][1] = readInt("upper bound of var " + i) ;
+        if (domainBounds[i][1] < domainBounds[i][0])
+          throw error("empty domain for var " + i) ;
       }
-      ArrayList<BinaryConstraint> constraints = readBinaryConstraints() ;
-      BinaryCSP csp = new BinaryCSP(domainBounds, constraints) ;
-      // TESTING:
-      // System.out.println(csp) ;
-      inFR.close() ;
-      return csp ;
+      ArrayList<BinaryConstraint> constraints = readBinaryConstraints(domainBounds) ;
+      return new BinaryCSP(domainBounds, constraints) ;
+    }
+    finally {
+      channel = null ;
+      buffer = null ;
     }
-    catch (FileNotFoundException e) {System.out.println(e);}
-    catch (IOException e) {System.out.println(e);}
-    return null ;
   }
 
-  /**
-   *
-   */
-  private ArrayList<BinaryConstraint> readBinaryConstraints() {
+  /**
+   * Reads constraints until the end of the file, setting one bit of the support rows per tuple.
+   * Tuples with a value outside the domain bounds can never be used and are ignored.
+   */
+  private ArrayList<BinaryConstraint> readBinaryConstraints(int[][] domainBounds) throws IOException {
     ArrayList<BinaryConstraint> constraints = new ArrayList<BinaryConstraint>() ;
-	
-    try {
-      in.nextToken() ;                                  //'c' or EOF
-      while(in.ttype != in.TT_EOF) {
-	      // scope
-	      in.nextToken() ;                                       //'('
-		    in.nextToken() ;                                       //var
-	      int var1 = (int)in.nval ;
-		    in.nextToken() ;                                       //','
-		    in.nextToken() ;                                       //var
-        int var2 = (int)in.nval ;
-		    in.nextToken() ;                                       //')'
+    int n = domainBounds.length ;
+    int c = skipBlanks() ;
+    while (c != -1) {
+      // scope
+      if (c != 'c')
+        throw error("expected c(<varno>, <varno>)") ;
+      buffer.get() ;
+      expect('(') ;
+      int var1 = readInt("variable") ;
+      expect(',') ;
+      int var2 = readInt("variable") ;
+      expect(')') ;
+      if (var1 < 0 || var1 >= n || var2 < 0 || var2 >= n)
+        throw error("constraint on unknown variable in c(" + var1 + ", " + var2 + ")") ;
+      int lb1 = domainBounds[var1][0], ub1 = domainBounds[var1][1] ;
+      int lb2 = domainBounds[var2][0], ub2 = domainBounds[var2][1] ;
 
-        //tuples
-		    ArrayList<BinaryTuple> tuples = new ArrayList<BinaryTuple>() ;
-        in.nextToken() ;              //1st allowed val of 1st tuple
-        while (!"c".equals(in.sval) && (in.ttype != in.TT_EOF)) {
-          int val1 = (int)in.nval ;
-	        in.nextToken() ;                                   //','
-	        in.nextToken() ;                               //2nd val
-		      int val2 = (int)in.nval ;
-		      tuples.add(new BinaryTuple(val1, val2)) ;
-		      in.nextToken() ;      //1stallowed val of next tuple/c/EOF
-		    }
-        BinaryConstraint c = new BinaryConstraint(var1, var2, tuples) ;
-        constraints.add(c) ;
+      //tuples
+      long[][] rows = new long[ub1 - lb1 + 1][BinaryConstraint.wordsFor(lb2, ub2)] ;
+      c = skipBlanks() ;
+      while (c != 'c' && c != -1) {
+        int val1 = readInt("first value of a tuple") ;
+        expect(',') ;
+        int val2 = readInt("second value of a tuple") ;
+        if (val1 >= lb1 && val1 <= ub1 && val2 >= lb2 && val2 <= ub2) {
+          int b = val2 - lb2 ;
+          rows[val1 - lb1][b >> 6] |= 1L << b ;
+        }
+        c = skipBlanks() ;
       }
-	  
-      return constraints ;
+      constraints.add(new BinaryConstraint(var1, var2, lb1, lb2, ub2, rows)) ;
     }
-    catch (IOException e) {System.out.println(e);}
-    return null ;  
+    return constraints ;
+  }
+
+  /**
+   * Skips whitespace and comments.
+   * @return the next byte, left unconsumed, or -1 at the end of the file
+   */
+  private int skipBlanks() throws IOException {
+    while (true) {
+      if (!buffer.hasRemaining() && !refill())
+        return -1 ;
+      int c = buffer.get(buffer.position()) ;
+      if (c == '\n') {
+        line++ ;
+        buffer.get() ;
+      }
+      else if (c == ' ' || c == '\t' || c == '\r' || c == '\f')
+        buffer.get() ;
+      else if (c == '/') {
+        // comment: up to, not including, the end of the line
+        while ((buffer.hasRemaining() || refill()) && buffer.get(buffer.position()) != '\n')
+          buffer.get() ;
+      }
+      else
+        return c ;
+    }
+  }
+
+  /**
+   * Parses an optionally signed decimal integer.
+   * @param what description of the expected integer, for error messages
+   */
+  private int readInt(String what) throws IOException {
+    int c = skipBlanks() ;
+    boolean negative = false ;
+    if (c == '-') {
+      negative = true ;
+      buffer.get() ;
+      c = (buffer.hasRemaining() || refill()) ? buffer.get(buffer.position()) : -1 ;
+    }
+    if (c < '0' || c > '9')
+      throw error("expected " + what + (c == -1 ? " but reached the end of the file" : " but found '" + (char)c + "'")) ;
+    long value = 0 ;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0') ;
+      if (value > Integer.MAX_VALUE + 1L)
+        throw error(what + " is out of range") ;
+      buffer.get() ;
+      c = (buffer.hasRemaining() || refill()) ? buffer.get(buffer.position()) : -1 ;
+    }
+    value = negative ? -value : value ;
+    if (value > Integer.MAX_VALUE)
+      throw error(what + " is out of range") ;
+    return (int)value ;
+  }
+
+  /**
+   * Consumes the given character, after any blanks.
+   */
+  private void expect(char expected) throws IOException {
+    int c = skipBlanks() ;
+    if (c != expected)
+      throw error("expected '" + expected + "'" + (c == -1 ? " but reached the end of the file" : " but found '" + (char)c + "'")) ;
+    buffer.get() ;
+  }
+
+  /**
+   * Reads the next chunk of the file into the buffer.
+   * @return false at the end of the file
+   */
+  private boolean refill() throws IOException {
+    buffer.clear() ;
+    int read = 0 ;
+    while (read == 0)
+      read = channel.read(buffer) ;
+    buffer.flip() ;
+    return read > 0 ;
+  }
+
+  private CSPFormatException error(String message) {
+    return new CSPFormatException(fileName, line, message) ;
   }
 }
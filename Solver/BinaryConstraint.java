@@ -3,6 +3,10 @@ import java.util.*;
 public final class BinaryConstraint {
     private int firstVar, secondVar;
     private ArrayList<BinaryTuple> tuples;
+    // lower bounds of the two domains, used to offset values into bit positions
+    private int firstLB, secondLB;
+    // firstSupports[a - firstLB] is the set of values of secondVar compatible with firstVar = a, and vice versa
+    private long[][] firstSupports, secondSupports;
 
     public BinaryConstraint(int fv, int sv, ArrayList<BinaryTuple> t) {
         firstVar = fv;
@@ -10,10 +14,42 @@ public final class BinaryConstraint {
         tuples = t;
     }
 
+    /**
+     * Creates an already compiled constraint from its support rows in the first-to-second direction. The reverse rows
+     * are derived here; the tuple list is only built if getTuples() is called.
+     *
+     * @param fv            first variable
+     * @param sv            second variable
+     * @param firstLB       lower bound of the first variable's domain
+     * @param secondLB      lower bound of the second variable's domain
+     * @param secondUB      upper bound of the second variable's domain
+     * @param firstSupports one row per value of the first variable, as described for compile. Not copied.
+     */
+    public BinaryConstraint(int fv, int sv, int firstLB, int secondLB, int secondUB, long[][] firstSupports) {
+        firstVar = fv;
+        secondVar = sv;
+        this.firstLB = firstLB;
+        this.secondLB = secondLB;
+        this.firstSupports = firstSupports;
+        int firstWords = wordsFor(0, firstSupports.length - 1);
+        secondSupports = new long[secondUB - secondLB + 1][firstWords];
+        for (int a = 0; a < firstSupports.length; a++) {
+            long[] row = firstSupports[a];
+            for (int w = 0; w < row.length; w++) {
+                long word = row[w];
+                while (word != 0) {
+                    int b = (w << 6) + Long.numberOfTrailingZeros(word);
+                    secondSupports[b][a >> 6] |= 1L << a;
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
     public String toString() {
         StringBuffer result = new StringBuffer();
         result.append("c(" + firstVar + ", " + secondVar + ")\n");
-        for (BinaryTuple bt : tuples)
+        for (BinaryTuple bt : getTuples())
             result.append(bt + "\n");
         return result.toString();
     }
@@ -24,10 +60,149 @@ public final class BinaryConstraint {
         return result.toString();
     }
 
-    // SUGGESTION: You will want to add methods here to reason about the constraint
+    /**
+     * Number of 64-bit words needed to hold one bit per value of the domain lb..ub.
+     */
+    public static int wordsFor(int lb, int ub) {
+        return ((ub - lb) >> 6) + 1;
+    }
+
+
+    /**
+     * Compiles the tuple list into per-value support bitsets in both directions. Called once by BinaryCSP when the
+     * domain bounds are known. Tuples with a value outside the bounds can never be used and are ignored.
+     */
+    public void compile(int firstLB, int firstUB, int secondLB, int secondUB) {
+        if (isCompiled()) {
+            return;
+        }
+        this.firstLB = firstLB;
+        this.secondLB = secondLB;
+        firstSupports = new long[firstUB - firstLB + 1][wordsFor(secondLB, secondUB)];
+        secondSupports = new long[secondUB - secondLB + 1][wordsFor(firstLB, firstUB)];
+        for (BinaryTuple t : tuples) {
+            int a = t.getFirstVal() - firstLB;
+            int b = t.getSecondVal() - secondLB;
+            if (a < 0 || a >= firstSupports.length || b < 0 || b >= secondSupports.length) {
+                continue;
+            }
+            firstSupports[a][b >> 6] |= 1L << b;
+            secondSupports[b][a >> 6] |= 1L << a;
+        }
+    }
+
+
+    /**
+     * Returns the supports of var = val as a bitset over the other variable's domain, offset by its lower bound.
+     *
+     * @param var either the first or the second variable of the constraint
+     * @param val a value of var
+     * @return the support words, or null if val lies outside var's domain bounds. Must not be modified.
+     */
+    public long[] getSupports(int var, int val) {
+        long[][] supports;
+        int index;
+        if (var == firstVar) {
+            supports = firstSupports;
+            index = val - firstLB;
+        } else {
+            supports = secondSupports;
+            index = val - secondLB;
+        }
+        if (index < 0 || index >= supports.length) {
+            return null;
+        }
+        return supports[index];
+    }
+
+
+    /**
+     * Single bit test for whether var = val and other = otherVal is an allowed pair.
+     *
+     * @param var either the first or the second variable of the constraint
+     * @param val value of var
+     * @param otherVal value of the other variable
+     */
+    public boolean allows(int var, int val, int otherVal) {
+        long[] supports = getSupports(var, val);
+        if (supports == null) {
+            return false;
+        }
+        int b = otherVal - (var == firstVar ? secondLB : firstLB);
+        if (b < 0 || (b >> 6) >= supports.length) {
+            return false;
+        }
+        return (supports[b >> 6] & (1L << b)) != 0;
+    }
+
+
+    /**
+     * Whether var = val has at least one support in a domain of the other variable, given as a bitset with the same
+     * value offset and word count as the support bitsets, starting at domainWords[offset].
+     */
+    public boolean hasSupport(int var, int val, long[] domainWords, int offset) {
+        long[] supports = getSupports(var, val);
+        if (supports == null) {
+            return false;
+        }
+        for (int w = 0; w < supports.length; w++) {
+            if ((supports[w] & domainWords[offset + w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Looks for a support of var = val in a domain of the other variable, given as in hasSupport. The search starts at
+     * word fromWord and wraps around, so a caller holding a residual support can resume where it was last found.
+     *
+     * @return the smallest supporting value in the first word that has one, or DomainStore.NONE if there is none.
+     */
+    public int findSupport(int var, int val, long[] domainWords, int offset, int fromWord) {
+        long[] supports = getSupports(var, val);
+        if (supports == null) {
+            return DomainStore.NONE;
+        }
+        int otherLB = var == firstVar ? secondLB : firstLB;
+        int w = fromWord;
+        for (int k = 0; k < supports.length; k++) {
+            long common = supports[w] & domainWords[offset + w];
+            if (common != 0) {
+                return otherLB + (w << 6) + Long.numberOfTrailingZeros(common);
+            }
+            if (++w == supports.length) {
+                w = 0;
+            }
+        }
+        return DomainStore.NONE;
+    }
 
 
-    public ArrayList<BinaryTuple> getTuples() {
+    public boolean isCompiled() {
+        return firstSupports != null;
+    }
+
+
+    /**
+     * @return the allowed tuples. For a constraint created from support rows they are built, once, from the rows,
+     * which is the only lazy state of a CSP; it is synchronised so that solvers on several threads may share one.
+     */
+    public synchronized ArrayList<BinaryTuple> getTuples() {
+        if (tuples == null) {
+            tuples = new ArrayList<BinaryTuple>();
+            for (int a = 0; a < firstSupports.length; a++) {
+                long[] row = firstSupports[a];
+                for (int w = 0; w < row.length; w++) {
+                    long word = row[w];
+                    while (word != 0) {
+                        tuples.add(new BinaryTuple(firstLB + a, secondLB + (w << 6) + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
         return tuples;
     }
 
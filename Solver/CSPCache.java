@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Cache of parsed instances, so that a long-running process reads each file once. Entries are keyed by the SHA-256 of
+ * the file's content alone, so an edited file is read again and two copies of the same file share one entry whatever
+ * their modification times. The least recently used instances are evicted once their estimated size exceeds the
+ * memory budget, together with what is remembered about the files they were read from.
+ *
+ * A BinaryCSP is never modified by the solvers, so a cached instance can be handed to any number of searches and
+ * threads at once. All methods are thread-safe.
+ */
+public class CSPCache {
+
+    public static final long DEFAULT_BUDGET = 256L << 20;
+
+    private long budget;
+    // in access order, least recently used first
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // content hash of each file last time it was seen, so that an unchanged file is not hashed again; only kept while
+    // that content is cached
+    private HashMap<Path, Stamp> stamps = new HashMap<>();
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+
+    private static class Entry {
+        BinaryCSP csp;
+        long bytes;
+        // files this instance was found in, whose stamps go when it is evicted
+        HashSet<Path> paths = new HashSet<>();
+
+        Entry(BinaryCSP csp, long bytes) {
+            this.csp = csp;
+            this.bytes = bytes;
+        }
+    }
+
+
+    private static class Stamp {
+        long modified;
+        long size;
+        String hash;
+
+        Stamp(long modified, long size, String hash) {
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+
+    /**
+     * Class constructor with the default budget of 256 MB.
+     */
+    public CSPCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+
+    /**
+     * Class constructor
+     * @param budget estimated bytes the cached instances may take; an instance larger than that is never cached.
+     */
+    public CSPCache(long budget) {
+        this.budget = budget;
+    }
+
+
+    /**
+     * Returns the instance held in a file, reading it, text or compiled, only if it is not cached yet.
+     * @throws IOException if the file cannot be read or is not a CSP.
+     */
+    public BinaryCSP get(String file) throws IOException {
+        Path path = Paths.get(file).toAbsolutePath().normalize();
+        String key = key(path);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                entry.paths.add(path);
+                return entry.csp;
+            }
+            misses++;
+        }
+        // read without holding the lock; if another thread read the same file meanwhile, the first copy is kept
+        BinaryCSP csp = CSPSolver.read(file);
+        long size = csp.estimateBytes();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.paths.add(path);
+                return entry.csp;
+            }
+            if (size <= budget) {
+                entry = new Entry(csp, size);
+                entry.paths.add(path);
+                entries.put(key, entry);
+                bytes += size;
+                evict();
+            } else {
+                forget(path, key);
+            }
+        }
+        return csp;
+    }
+
+
+    /**
+     * Drops least recently used instances until the cache fits in its budget.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > budget && eldest.hasNext()) {
+            Map.Entry<String, Entry> next = eldest.next();
+            bytes -= next.getValue().bytes;
+            for (Path path : next.getValue().paths) {
+                forget(path, next.getKey());
+            }
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+
+    /**
+     * Drops the stamp of a file, unless it has been edited since and now holds other content.
+     */
+    private void forget(Path path, String hash) {
+        Stamp stamp = stamps.get(path);
+        if (stamp != null && stamp.hash.equals(hash)) {
+            stamps.remove(path);
+        }
+    }
+
+
+    /**
+     * @return the content hash of a file, hashing it only if its modification time or size has changed since it was
+     * last seen.
+     */
+    private String key(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        Stamp stamp;
+        synchronized (this) {
+            stamp = stamps.get(path);
+        }
+        if (stamp == null || stamp.modified != modified || stamp.size != size) {
+            stamp = new Stamp(modified, size, sha256(path));
+            synchronized (this) {
+                stamps.put(path, stamp);
+            }
+        }
+        return stamp.hash;
+    }
+
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+
+    /**
+     * Empties the cache. The metrics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        stamps.clear();
+        bytes = 0;
+    }
+
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+
+    /**
+     * @return estimated bytes taken by the cached instances.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    public long getBudget() {
+        return budget;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return "instances: " + entries.size() + ", bytes: " + bytes + " of " + budget + ", hits: " + hits
+                + ", misses: " + misses + ", evictions: " + evictions;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+/**
+ * Custom exception. Thrown by BinaryCSPReader when a .csp file does not follow the expected format.
+ */
+public class CSPFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private int line;
+
+    public CSPFormatException(String fileName, int line, String message) {
+        super(fileName + ":" + line + ": " + message);
+        this.line = line;
+    }
+
+    /**
+     * @return the line of the file at which the error was detected, counting from 1.
+     */
+    public int getLine() {
+        return line;
+    }
+}
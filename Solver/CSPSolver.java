@@ -0,0 +1,176 @@
+import java.io.IOException;
+
+
+/**
+ * Entry point for using the solvers as a library. A CSPSolver holds only its options: every call to solve() sets up a
+ * fresh search, prints nothing and returns a SolverResult, so one instance can be kept for the life of a process and
+ * used on any number of instances, from any number of threads.
+ *
+ *   CSPSolver solver = new CSPSolver(SolverOptions.parse("-m", "-d"));
+ *   SolverResult result = solver.solve(new BinaryCSPReader().readBinaryCSP("8Queens.csp"));
+ */
+public class CSPSolver {
+
+    private SolverOptions options;
+    // instances read by solve(String), or null to read the file every time
+    private CSPCache cache;
+
+
+    /**
+     * Class constructor with the default options: forward checking with static ordering.
+     */
+    public CSPSolver() {
+        this(new SolverOptions());
+    }
+
+
+    /**
+     * Class constructor
+     * @param options algorithm and heuristics to use. They are read on every call, so they should not be changed
+     * while another thread is solving.
+     */
+    public CSPSolver(SolverOptions options) {
+        this(options, null);
+    }
+
+
+    /**
+     * Class constructor
+     * @param options algorithm and heuristics to use.
+     * @param cache cache of the instances read by solve(String), which may be shared with other CSPSolvers.
+     */
+    public CSPSolver(SolverOptions options, CSPCache cache) {
+        this.options = options;
+        this.cache = cache;
+    }
+
+
+    /**
+     * Reads an instance, text or compiled (.bcsp), and solves it. With a cache, the file is only read again if it has
+     * changed.
+     * @throws IOException if the file cannot be read or is not a CSP.
+     */
+    public SolverResult solve(String file) throws IOException {
+        return solve(cache != null ? cache.get(file) : read(file));
+    }
+
+
+    /**
+     * Reads an instance: files ending in .bcsp are memory-mapped compiled instances, any other file is read as text.
+     * @throws IOException if the file cannot be read or is not a CSP.
+     */
+    public static BinaryCSP read(String file) throws IOException {
+        if (file.endsWith(".bcsp")) {
+            return new CompiledCSPReader().readCompiledCSP(file);
+        }
+        return new BinaryCSPReader().readBinaryCSP(file);
+    }
+
+
+    public SolverResult solve(BinaryCSP csp) {
+        return solve(csp, null);
+    }
+
+
+    /**
+     * Solves an instance, passing every solution found to the listener as well.
+     * @param csp the instance to solve; it is only read.
+     * @param listener receives each solution, or null.
+     */
+    public SolverResult solve(BinaryCSP csp, SolutionListener listener) {
+        long start = System.currentTimeMillis();
+        boolean consistent = true;
+        if (options.isPreprocess()) {
+            Preprocessor preprocessor = new Preprocessor(csp);
+            csp = preprocessor.preprocess();
+            consistent = preprocessor.isConsistent();
+        }
+        Solver solver = createSolver(csp, null);
+        if (listener != null) {
+            solver.setSolutionListener(listener);
+        }
+        // a problem that preprocessing found to have no solution is not searched
+        if (consistent) {
+            solver.search();
+        }
+        long end = System.currentTimeMillis();
+        return new SolverResult(solver.getName(), solver.getSolution(), solver.getSolutionCount(),
+                solver.getNodeCount(), solver.getRevisionCount(), solver.getElapsedTime(), end - start, solver.getMetrics());
+    }
+
+
+    /**
+     * Sets up a solver as configured by the options.
+     * @param csp the instance to solve.
+     * @param root search state to start from, e.g. a Subproblem, or null for the full domains. Not supported by the
+     *             parallel tree search.
+     * @throws IllegalArgumentException if the options cannot be combined, as SolverOptions.validate() tells.
+     */
+    public Solver createSolver(BinaryCSP csp, Node root) {
+        options.validate();
+        Solver solver;
+        if (options.getThreads() > 0) {
+            if (root != null) {
+                throw new IllegalArgumentException("the parallel tree search always starts from the full domains");
+            }
+            ParallelSearch parallelSearch = new ParallelSearch(csp, options.isMac(), options.isDynamicOrdering(),
+                    options.getThreads());
+            parallelSearch.setResidualRevise(options.isResidualRevise());
+            parallelSearch.setDomainOrderedQueue(options.isDomainOrderedQueue());
+            parallelSearch.setPropagatorName(options.getPropagator());
+            if (options.isDynamicOrdering()) {
+                parallelSearch.setVarHeuristic(options.getVarHeuristic());
+            }
+            parallelSearch.setValHeuristic(options.getValHeuristic());
+            solver = parallelSearch;
+        } else if (options.isMac()) {
+            MaintainArcConsistency macSolver = root == null
+                    ? new MaintainArcConsistency(csp, options.isDynamicOrdering())
+                    : new MaintainArcConsistency(csp, options.isDynamicOrdering(), root);
+            macSolver.setResidualRevise(options.isResidualRevise());
+            macSolver.setDomainOrderedQueue(options.isDomainOrderedQueue());
+            if (options.isDynamicOrdering()) {
+                macSolver.setVarHeuristic(options.getVarHeuristic());
+            }
+            macSolver.setValHeuristic(options.getValHeuristic());
+            if (options.getRestartPolicy() != null) {
+                macSolver.setRestartPolicy(options.getRestartPolicy(), options.getSeed());
+            }
+            if (options.getPropagator().equals("ac6")) {
+                macSolver.setPropagator(new AC6Propagator(csp));
+            }
+            solver = macSolver;
+        } else if (options.isCbj()) {
+            ForwardCheckingCBJ cbjSolver = root == null
+                    ? new ForwardCheckingCBJ(csp, options.isDynamicOrdering())
+                    : new ForwardCheckingCBJ(csp, options.isDynamicOrdering(), root);
+            cbjSolver.setResidualRevise(options.isResidualRevise());
+            if (options.isDynamicOrdering()) {
+                cbjSolver.setVarHeuristic(options.getVarHeuristic());
+            }
+            cbjSolver.setValHeuristic(options.getValHeuristic());
+            solver = cbjSolver;
+        } else {
+            ForwardChecking fcSolver = root == null
+                    ? new ForwardChecking(csp, options.isDynamicOrdering())
+                    : new ForwardChecking(csp, options.isDynamicOrdering(), root);
+            fcSolver.setResidualRevise(options.isResidualRevise());
+            if (options.isDynamicOrdering()) {
+                fcSolver.setVarHeuristic(options.getVarHeuristic());
+            }
+            fcSolver.setValHeuristic(options.getValHeuristic());
+            if (options.getRestartPolicy() != null) {
+                fcSolver.setRestartPolicy(options.getRestartPolicy(), options.getSeed());
+            }
+            solver = fcSolver;
+        }
+        solver.setSolutionLimit(options.getSolutionLimit());
+        solver.setDetailedMetrics(options.isDetailedMetrics());
+        return solver;
+    }
+
+
+    public SolverOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Reader for CSPs compiled by BinaryCSPCompiler. The file is memory-mapped and every relation row is bulk-copied
+ * straight into the support rows of an already compiled BinaryConstraint, with no tokenising and no tuple objects.
+ */
+public final class CompiledCSPReader {
+
+    /**
+     * Main (for testing)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java CompiledCSPReader <file.bcsp>");
+            return;
+        }
+        System.out.println(new CompiledCSPReader().readCompiledCSP(args[0]));
+    }
+
+
+    /**
+     * @param fn name of a file written by BinaryCSPCompiler
+     * @return the CSP it holds
+     * @throws IOException if the file cannot be read or is not in the binary format
+     */
+    public BinaryCSP readCompiledCSP(String fn) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fn), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != BinaryCSPCompiler.MAGIC) {
+                throw new IOException(fn + ": not a compiled CSP file");
+            }
+            int version = buffer.getInt();
+            if (version != BinaryCSPCompiler.VERSION) {
+                throw new IOException(fn + ": unsupported compiled CSP version " + version);
+            }
+            // every count and size is checked against what is left of the file before anything is allocated, so a
+            // corrupt file fails with an IOException rather than a NegativeArraySizeException or OutOfMemoryError
+            int n = buffer.getInt();
+            if (n < 0) {
+                throw new IOException(fn + ": negative number of variables");
+            }
+            if (2L * n * Integer.BYTES > buffer.remaining()) {
+                throw new IOException(fn + ": truncated compiled CSP file");
+            }
+            int[][] domainBounds = new int[n][2];
+            for (int var = 0; var < n; var++) {
+                domainBounds[var][0] = buffer.getInt();
+                domainBounds[var][1] = buffer.getInt();
+                long size = (long) domainBounds[var][1] - domainBounds[var][0] + 1;
+                if (size < 1 || size > Integer.MAX_VALUE) {
+                    throw new IOException(fn + ": invalid bounds for var " + var);
+                }
+            }
+            int noConstraints = buffer.getInt();
+            if (noConstraints < 0) {
+                throw new IOException(fn + ": negative number of constraints");
+            }
+            if (2L * noConstraints * Integer.BYTES > buffer.remaining()) {
+                throw new IOException(fn + ": truncated compiled CSP file");
+            }
+            ArrayList<BinaryConstraint> constraints = new ArrayList<BinaryConstraint>(noConstraints);
+            for (int k = 0; k < noConstraints; k++) {
+                int first = buffer.getInt();
+                int second = buffer.getInt();
+                if (first < 0 || first >= n || second < 0 || second >= n) {
+                    throw new IOException(fn + ": constraint " + k + " has a variable out of range");
+                }
+                int lb1 = domainBounds[first][0];
+                int ub1 = domainBounds[first][1];
+                int lb2 = domainBounds[second][0];
+                int ub2 = domainBounds[second][1];
+                int words = BinaryConstraint.wordsFor(lb2, ub2);
+                if (((long) ub1 - lb1 + 1) * words * Long.BYTES > buffer.remaining()) {
+                    throw new IOException(fn + ": truncated compiled CSP file");
+                }
+                long[][] rows = new long[ub1 - lb1 + 1][words];
+                LongBuffer longs = buffer.asLongBuffer();
+                for (long[] row : rows) {
+                    longs.get(row);
+                }
+                buffer.position(buffer.position() + rows.length * words * Long.BYTES);
+                constraints.add(new BinaryConstraint(first, second, lb1, lb2, ub2, rows));
+            }
+            return new BinaryCSP(domainBounds, constraints);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(fn + ": truncated compiled CSP file");
+        }
+    }
+}
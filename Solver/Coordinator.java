@@ -0,0 +1,397 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coordinator of the embarrassingly parallel search. It splits one problem into arc consistent subproblems with
+ * Decomposer, starts worker JVMs on the local machine, and hands the subproblems out over a loopback socket to
+ * whichever worker asks next, until one of them finds a solution or all of them have been refuted. Usage:
+ *
+ *   java Coordinator <csp_filename> [-n <depth>] [-w <workers>] [-o <file>] [solver flags]
+ *
+ * -n sets the number of variables assigned in each subproblem (4 by default), -w the number of worker processes (one
+ * per core by default, 0 to only decompose) and -o writes the subproblems to a file, one per line. Any other flag, e.g.
+ * -m -d -p ac6, selects the solver of the workers as for Main; -d and -D also order the decomposition. The search
+ * stops at the first solution, so -a, -c and -l are rejected.
+ *
+ * Protocol, one line of text per message: the worker sends READY, then the coordinator answers every READY or RESULT
+ * with either SUB followed by a Subproblem line, or DONE.
+ */
+public class Coordinator {
+
+    public static final String READY = "READY";
+    public static final String SUBPROBLEM = "SUB ";
+    public static final String RESULT = "RESULT ";
+    public static final String DONE = "DONE";
+
+    private static final int DEFAULT_DEPTH = 4;
+    // how long to wait for a worker process to connect
+    private static final int ACCEPT_TIMEOUT = 60000;
+
+    private BinaryCSP csp;
+    private String file;
+    private ArrayList<String> workerFlags;
+    private ConcurrentLinkedQueue<Subproblem> pending;
+    // worker processes, stopped as soon as a solution is found
+    private ArrayList<Process> processes;
+
+    // results, guarded by this
+    private int[] solution;
+    private int solutionSubproblem = -1;
+    private int subproblemsSolved = 0;
+    // subproblems handed to a worker that has not answered yet
+    private int inFlight = 0;
+    private long nodeCount = 0;
+    private long revisionCount = 0;
+    private long[] workerSubproblems;
+    private long[] workerNodes;
+    private long[] workerTime;
+
+
+    /**
+     * Class constructor
+     * @param csp the instance representing the binary constraint problem.
+     * @param file the file it was read from, which the workers read again.
+     * @param workerFlags solver flags passed on to the workers.
+     */
+    public Coordinator(BinaryCSP csp, String file, ArrayList<String> workerFlags) {
+        this.csp = csp;
+        this.file = file;
+        this.workerFlags = workerFlags;
+    }
+
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java Coordinator <csp_filename> [-n <depth>] [-w <workers>] [-o <file>] "
+                    + "[solver flags]");
+            return;
+        }
+        String file = args[0];
+        BinaryCSP csp;
+        try {
+            csp = CSPSolver.read(file);
+        } catch (IOException e) {
+            System.err.println(e);
+            return;
+        }
+
+        int depth = DEFAULT_DEPTH;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String outputFile = null;
+        boolean dynamicOrdering = false;
+        ArrayList<String> workerFlags = new ArrayList<>();
+        int i = 1;
+        while (i < args.length && args[i].startsWith("-")) {
+            String arg = args[i++];
+            StringBuilder forwarded = new StringBuilder("-");
+            for (int j = 1; j < arg.length(); j++) {
+                char flag = arg.charAt(j);
+                switch (flag) {
+                    case 'n':
+                    case 'w':
+                    case 'o':
+                        if (i >= args.length) {
+                            System.err.println("ParseCmdLine: -" + flag + " requires a value");
+                        } else if (flag == 'o') {
+                            outputFile = args[i++];
+                        } else {
+                            try {
+                                int value = Integer.parseInt(args[i++]);
+                                if (flag == 'n') {
+                                    depth = value;
+                                } else {
+                                    workers = value;
+                                }
+                            } catch (NumberFormatException e) {
+                                System.err.println("ParseCmdLine: -" + flag + " requires a number");
+                            }
+                        }
+                        break;
+                    // propagation engine, variable or value ordering heuristic, restart policy, seed or threads of
+                    // the workers, passed on with its value. With -D, the decomposition orders variables by domain
+                    // size
+                    case 'p':
+                    case 'D':
+                    case 'v':
+                    case 'R':
+                    case 'S':
+                    case 't':
+                        if (flag == 'D') {
+                            dynamicOrdering = true;
+                        }
+                        forwarded.append(flag);
+                        if (i < args.length) {
+                            workerFlags.add(forwarded.toString());
+                            workerFlags.add(args[i++]);
+                            forwarded = new StringBuilder("-");
+                        }
+                        break;
+                    case 'd':
+                        dynamicOrdering = true;
+                        forwarded.append(flag);
+                        break;
+                    // a worker only reports whether its subproblem has a solution, so solutions cannot be counted
+                    case 'a':
+                    case 'c':
+                    case 'l':
+                        System.err.println("ParseCmdLine: -" + flag + " cannot be used with the coordinator, which "
+                                + "stops at the first solution");
+                        return;
+                    default:
+                        forwarded.append(flag);
+                        break;
+                }
+            }
+            if (forwarded.length() > 1) {
+                workerFlags.add(forwarded.toString());
+            }
+        }
+
+        // every worker would fail on flags it cannot use, so they are checked once here
+        try {
+            if (SolverOptions.parse(workerFlags.toArray(new String[0])).getThreads() > 0) {
+                throw new IllegalArgumentException("-t cannot be used by the workers, which search on one thread each");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ParseCmdLine: " + e.getMessage());
+            return;
+        }
+
+        Coordinator coordinator = new Coordinator(csp, file, workerFlags);
+        try {
+            coordinator.run(depth, dynamicOrdering, workers, outputFile);
+        } catch (IOException e) {
+            System.err.println(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Decomposes the problem, writes the subproblems out if asked to, and solves them on the workers.
+     */
+    public void run(int depth, boolean dynamicOrdering, int workers, String outputFile)
+            throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Decomposer decomposer = new Decomposer(csp, dynamicOrdering);
+        ArrayList<Subproblem> subproblems = decomposer.decompose(depth);
+        long decomposed = System.currentTimeMillis();
+        System.out.println("Decomposed into " + subproblems.size() + " arc consistent subproblems at depth " + depth
+                + " in " + (decomposed - startTime) + "ms (" + decomposer.getNodeCount() + " nodes)\n");
+        nodeCount = decomposer.getNodeCount();
+
+        if (outputFile != null) {
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.US_ASCII)) {
+                for (Subproblem subproblem : subproblems) {
+                    writer.write(subproblem.toString());
+                    writer.newLine();
+                }
+            }
+            System.out.println("Subproblems written to " + outputFile + "\n");
+        }
+        if (workers <= 0) {
+            return;
+        }
+        // no more workers than subproblems, and none at all if the decomposition refuted the problem
+        workers = Math.min(workers, subproblems.size());
+
+        pending = new ConcurrentLinkedQueue<>(subproblems);
+        inFlight = 0;
+        workerSubproblems = new long[workers];
+        workerNodes = new long[workers];
+        workerTime = new long[workers];
+        System.out.println("Solving with " + workers + " worker processes" + (workerFlags.isEmpty() ? "" : " "
+                + String.join(" ", workerFlags)) + "...\n");
+        processes = new ArrayList<>();
+        ArrayList<Thread> handlers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT);
+            for (int w = 0; w < workers; w++) {
+                processes.add(startWorker(server.getLocalPort()));
+            }
+            for (int w = 0; w < workers; w++) {
+                Socket socket = server.accept();
+                final int worker = w;
+                Thread handler = new Thread(() -> serve(worker, socket), "worker-" + w);
+                handler.start();
+                handlers.add(handler);
+            }
+            for (Thread handler : handlers) {
+                handler.join();
+            }
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+        long endTime = System.currentTimeMillis();
+
+        if (solution != null) {
+            System.out.println("Solution found in subproblem " + solutionSubproblem);
+            System.out.println("Values: " + Arrays.toString(solution));
+        } else if (subproblemsSolved == subproblems.size()) {
+            System.out.println("No solution found");
+        } else {
+            System.out.println("No solution found, but only " + subproblemsSolved + " of " + subproblems.size()
+                    + " subproblems were solved");
+        }
+        System.out.println("Subproblems solved: " + subproblemsSolved + " of " + subproblems.size());
+        System.out.println("Number of nodes: " + nodeCount);
+        System.out.println("Number of arc revisions: " + revisionCount);
+        System.out.println("Time elapsed: " + Long.toString(endTime - startTime) + "ms");
+        System.out.println("\nSubproblems, nodes and search time of each worker:");
+        for (int w = 0; w < workers; w++) {
+            System.out.println("  worker " + w + ": " + workerSubproblems[w] + ", " + workerNodes[w] + ", "
+                    + workerTime[w] + "ms");
+        }
+    }
+
+
+    /**
+     * Starts a worker JVM with the same class path as this one.
+     */
+    private Process startWorker(int port) throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Worker");
+        command.add(file);
+        command.add(Integer.toString(port));
+        command.addAll(workerFlags);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+
+    /**
+     * Hands subproblems to one worker until there are none left or a solution has been found. A subproblem whose
+     * worker dies before answering goes back to the queue for the others, so a worker is only told it is done once no
+     * subproblem is left out. Once a solution is found, record() stops every worker, so the handlers of the workers
+     * still searching return straight away.
+     */
+    private void serve(int worker, Socket socket) {
+        Subproblem current = null;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII), true)) {
+            String line = in.readLine();
+            while (line != null) {
+                if (line.startsWith(RESULT)) {
+                    record(worker, line.substring(RESULT.length()));
+                    current = null;
+                    finished(null);
+                } else if (!line.equals(READY)) {
+                    throw new IOException("unexpected message from worker " + worker + ": " + line);
+                }
+                current = next();
+                if (current == null) {
+                    out.println(DONE);
+                    break;
+                }
+                out.println(SUBPROBLEM + current);
+                line = in.readLine();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // the connections of the workers stopped once a solution was found break off as expected
+            if (!isSolved()) {
+                System.err.println("Coordinator: " + e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current != null) {
+            finished(current);
+        }
+    }
+
+
+    /**
+     * Takes the next subproblem off the queue. While it is empty but subproblems are still out, waits for them: one
+     * may come back if its worker dies.
+     * @return the subproblem, or null once a solution has been found or every subproblem has been solved.
+     */
+    private synchronized Subproblem next() throws InterruptedException {
+        while (solution == null) {
+            Subproblem next = pending.poll();
+            if (next != null) {
+                inFlight++;
+                return next;
+            }
+            if (inFlight == 0) {
+                return null;
+            }
+            wait();
+        }
+        return null;
+    }
+
+
+    /**
+     * Accounts for a subproblem handed out by next() having been answered, or put back on the queue if requeued is not
+     * null, and wakes the handlers waiting in next().
+     */
+    private synchronized void finished(Subproblem requeued) {
+        inFlight--;
+        if (requeued != null) {
+            pending.add(requeued);
+        }
+        notifyAll();
+    }
+
+
+    /**
+     * Adds the outcome of a subproblem, as formatted by the worker, to the results.
+     */
+    private synchronized void record(int worker, String result) {
+        String[] fields = result.split(" ");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("malformed result: " + result);
+        }
+        int id = Integer.parseInt(fields[0]);
+        long nodes = Long.parseLong(fields[2]);
+        subproblemsSolved++;
+        nodeCount += nodes;
+        revisionCount += Long.parseLong(fields[3]);
+        workerSubproblems[worker]++;
+        workerNodes[worker] += nodes;
+        workerTime[worker] += Long.parseLong(fields[4]);
+        if (fields[1].equals("SAT") && solution == null) {
+            String[] values = fields[5].split(",");
+            solution = new int[values.length];
+            for (int var = 0; var < values.length; var++) {
+                solution[var] = Integer.parseInt(values[var]);
+            }
+            solutionSubproblem = id;
+            // the subproblems still being searched cannot change the answer, so their workers are stopped rather
+            // than waited for; their handlers then see the connection close and return
+            for (Process process : processes) {
+                process.destroy();
+            }
+            notifyAll();
+        }
+    }
+
+
+    private synchronized boolean isSolved() {
+        return solution != null;
+    }
+}
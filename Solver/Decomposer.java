@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+
+
+/**
+ * Splits a problem into independent subproblems for embarrassingly parallel search. The first depth variables are
+ * assigned every value in turn, each assignment is propagated with AC6, and each consistent partial assignment becomes
+ * a subproblem holding the arc consistent domains it leads to. Inconsistent ones are dropped, so every subproblem is
+ * arc consistent when it is handed out, and together they cover every solution exactly once.
+ */
+public class Decomposer {
+
+    private BinaryCSP csp;
+    private boolean dynamicOrdering;
+    private Node node;
+    private AC6Propagator propagator;
+    private ArrayList<Subproblem> subproblems;
+    private int[] decisions;
+
+
+    /**
+     * Class constructor
+     * @param csp the instance representing the binary constraint problem.
+     * @param dynamicOrdering flag indicating whether the variables to assign are chosen smallest domain first.
+     */
+    public Decomposer(BinaryCSP csp, boolean dynamicOrdering) {
+        this.csp = csp;
+        this.dynamicOrdering = dynamicOrdering;
+    }
+
+
+    /**
+     * Enumerates the consistent assignments of depth variables.
+     *
+     * @param depth number of variables assigned in each subproblem, fewer if the assignment is already complete.
+     * @return the subproblems, numbered from 0; empty if the problem has no solution.
+     */
+    public ArrayList<Subproblem> decompose(int depth) {
+        ArrayList<Integer> varList = new ArrayList<>();
+        for (int i = 0; i < csp.getNoVariables(); i++) {
+            varList.add(i);
+        }
+        node = new Node(csp, new DomainStore(csp), varList);
+        propagator = new AC6Propagator(csp);
+        subproblems = new ArrayList<>();
+        decisions = new int[Math.min(depth, csp.getNoVariables())];
+        if (propagator.initialise(node)) {
+            enumerate(0);
+        }
+        return subproblems;
+    }
+
+
+    /**
+     * Assigns every value of the next variable in turn, once the first decided variables have been assigned.
+     */
+    private void enumerate(int decided) {
+        if (decided == decisions.length || node.completeAssignment()) {
+            int[] assignedVars = new int[decided];
+            System.arraycopy(decisions, 0, assignedVars, 0, decided);
+            subproblems.add(new Subproblem(subproblems.size(), assignedVars, node.getDomains().getWords().clone()));
+            return;
+        }
+        int var = dynamicOrdering ? node.selectVarDynamic() : node.selectVar();
+        decisions[decided] = var;
+        DomainStore domains = node.getDomains();
+        for (int val = domains.minValue(var); val != DomainStore.NONE; val = domains.nextValue(var, val + 1)) {
+            node.pushLevel();
+            node.assign(var, val);
+            if (propagator.propagate(node, var)) {
+                enumerate(decided + 1);
+            }
+            node.popLevel();
+        }
+    }
+
+
+    /**
+     * @return search tree nodes explored by the last decomposition.
+     */
+    public long getNodeCount() {
+        return node.getNodeCount();
+    }
+}
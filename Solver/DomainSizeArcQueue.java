@@ -0,0 +1,82 @@
+/**
+ * Arc queue ordered by the domain size of the arc's first variable, smallest first, so that AC3 revises the cheapest
+ * arcs, those of the most constrained variables, before the others. The size is taken when the arc is added; arcs with
+ * equal sizes come out in the order they were added. Backed by a binary heap, so add and poll are O(log n).
+ */
+public class DomainSizeArcQueue extends ArcQueue {
+
+    private BinaryCSP csp;
+    private DomainStore domains;
+
+    private int[] heap;
+    // keys[k] orders heap[k]: domain size in the high half, insertion number in the low half
+    private long[] keys;
+    private int sequence = 0;
+
+
+    /**
+     * Class constructor
+     *
+     * @param csp     instance of the binary CSP, used to find the first variable of an arc
+     * @param domains domains the arcs are ordered by
+     */
+    public DomainSizeArcQueue(BinaryCSP csp, DomainStore domains) {
+        super(csp.getNoArcs());
+        this.csp = csp;
+        this.domains = domains;
+        heap = new int[Math.max(csp.getNoArcs(), 1)];
+        keys = new long[heap.length];
+    }
+
+
+    @Override
+    protected void push(int arcId) {
+        if (size == 0) {
+            sequence = 0;
+        }
+        long key = ((long) domains.size(csp.getArcFirst(arcId)) << 32) | sequence++;
+        int k = size;
+        // sift up
+        while (k > 0) {
+            int parent = (k - 1) >> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[k] = heap[parent];
+            keys[k] = keys[parent];
+            k = parent;
+        }
+        heap[k] = arcId;
+        keys[k] = key;
+    }
+
+
+    @Override
+    protected int pop() {
+        int arcId = heap[0];
+        // size of the heap once arcId is out
+        int n = size - 1;
+        int last = heap[n];
+        long lastKey = keys[n];
+        // sift down
+        int k = 0;
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= lastKey) {
+                break;
+            }
+            heap[k] = heap[child];
+            keys[k] = keys[child];
+            k = child;
+        }
+        heap[k] = last;
+        keys[k] = lastKey;
+        return arcId;
+    }
+}
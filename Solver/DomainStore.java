@@ -0,0 +1,200 @@
+/**
+ * Primitive domain store. The domain of every variable is kept as a fixed, word-aligned bitset in one long[], where
+ * bit k of a variable's block stands for the value getLB(var) + k, together with a cached domain size.
+ * The word layout matches the support bitsets of BinaryConstraint, so the two can be ANDed directly.
+ */
+public final class DomainStore {
+
+    // returned by nextValue/minValue when there is no such value
+    public static final int NONE = Integer.MAX_VALUE;
+
+    // layout, shared between copies since it never changes
+    private final int[] lowerBounds;
+    private final int[] upperBounds;
+    private final int[] offsets;
+    private final int[] wordCounts;
+
+    private final long[] words;
+    private final int[] sizes;
+
+
+    /**
+     * Creates a store holding the initial domain of every variable of the CSP: lb..ub, less any value the CSP leaves
+     * out.
+     *
+     * @param csp instance of the binary CSP
+     */
+    public DomainStore(BinaryCSP csp) {
+        int n = csp.getNoVariables();
+        lowerBounds = new int[n];
+        upperBounds = new int[n];
+        offsets = new int[n];
+        wordCounts = new int[n];
+        sizes = new int[n];
+        int totalWords = 0;
+        for (int var = 0; var < n; var++) {
+            lowerBounds[var] = csp.getLB(var);
+            upperBounds[var] = csp.getUB(var);
+            offsets[var] = totalWords;
+            wordCounts[var] = BinaryConstraint.wordsFor(lowerBounds[var], upperBounds[var]);
+            totalWords += wordCounts[var];
+        }
+        words = new long[totalWords];
+        for (int var = 0; var < n; var++) {
+            for (int val = lowerBounds[var]; val <= upperBounds[var]; val++) {
+                if (csp.inDomain(var, val)) {
+                    int bit = val - lowerBounds[var];
+                    words[offsets[var] + (bit >> 6)] |= 1L << bit;
+                    sizes[var]++;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Creates a store holding the given domains, e.g. as sent by Coordinator.
+     *
+     * @param csp   instance of the binary CSP
+     * @param words domain words in the layout of getWords()
+     */
+    public DomainStore(BinaryCSP csp, long[] words) {
+        this(csp);
+        if (words.length != this.words.length) {
+            throw new IllegalArgumentException("expected " + this.words.length + " domain words, got " + words.length);
+        }
+        System.arraycopy(words, 0, this.words, 0, words.length);
+        for (int var = 0; var < sizes.length; var++) {
+            // ignore bits past the upper bound
+            int bits = upperBounds[var] - lowerBounds[var] + 1;
+            if ((bits & 63) != 0) {
+                this.words[offsets[var] + wordCounts[var] - 1] &= (1L << bits) - 1;
+            }
+            int size = 0;
+            for (int w = 0; w < wordCounts[var]; w++) {
+                size += Long.bitCount(this.words[offsets[var] + w]);
+            }
+            sizes[var] = size;
+        }
+    }
+
+
+    /**
+     * Copy constructor. Only the domain words and sizes are copied.
+     *
+     * @param other store to copy
+     */
+    public DomainStore(DomainStore other) {
+        lowerBounds = other.lowerBounds;
+        upperBounds = other.upperBounds;
+        offsets = other.offsets;
+        wordCounts = other.wordCounts;
+        words = other.words.clone();
+        sizes = other.sizes.clone();
+    }
+
+
+    public int size(int var) {
+        return sizes[var];
+    }
+
+
+    public boolean isEmpty(int var) {
+        return sizes[var] == 0;
+    }
+
+
+    public boolean contains(int var, int val) {
+        int bit = val - lowerBounds[var];
+        if (bit < 0 || val > upperBounds[var]) {
+            return false;
+        }
+        return (words[offsets[var] + (bit >> 6)] & (1L << bit)) != 0;
+    }
+
+
+    /**
+     * Deletes a value from a variable's domain.
+     *
+     * @return whether the value was present
+     */
+    public boolean remove(int var, int val) {
+        if (!contains(var, val)) {
+            return false;
+        }
+        int bit = val - lowerBounds[var];
+        words[offsets[var] + (bit >> 6)] &= ~(1L << bit);
+        sizes[var]--;
+        return true;
+    }
+
+
+    /**
+     * Puts a value back into a variable's domain.
+     *
+     * @return whether the value was absent
+     */
+    public boolean restore(int var, int val) {
+        if (contains(var, val)) {
+            return false;
+        }
+        int bit = val - lowerBounds[var];
+        words[offsets[var] + (bit >> 6)] |= 1L << bit;
+        sizes[var]++;
+        return true;
+    }
+
+
+    /**
+     * @return the smallest value of var's domain, or NONE if it is empty.
+     */
+    public int minValue(int var) {
+        return nextValue(var, lowerBounds[var]);
+    }
+
+
+    /**
+     * @return the smallest value of var's domain that is greater than or equal to from, or NONE if there is none.
+     */
+    public int nextValue(int var, int from) {
+        int bit = Math.max(from - lowerBounds[var], 0);
+        if (from > upperBounds[var]) {
+            return NONE;
+        }
+        int offset = offsets[var];
+        int w = bit >> 6;
+        long word = words[offset + w] & (-1L << bit);
+        while (true) {
+            if (word != 0) {
+                return lowerBounds[var] + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == wordCounts[var]) {
+                return NONE;
+            }
+            word = words[offset + w];
+        }
+    }
+
+
+    /**
+     * @return the raw domain words of all variables. The block of var starts at getOffset(var).
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+
+    public int getOffset(int var) {
+        return offsets[var];
+    }
+
+
+    public int getWordCount(int var) {
+        return wordCounts[var];
+    }
+
+
+    public int getNoVariables() {
+        return sizes.length;
+    }
+}
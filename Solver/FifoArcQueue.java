@@ -0,0 +1,40 @@
+/**
+ * FIFO queue of directed arcs for AC3. Arcs are held in a circular int buffer with one slot per arc of the CSP, so
+ * every operation is O(1).
+ */
+public class FifoArcQueue extends ArcQueue {
+
+    private int[] buffer;
+    private int head = 0;
+
+
+    /**
+     * Class constructor
+     *
+     * @param noArcs number of directed arcs of the CSP
+     */
+    public FifoArcQueue(int noArcs) {
+        super(noArcs);
+        buffer = new int[Math.max(noArcs, 1)];
+    }
+
+
+    @Override
+    protected void push(int arcId) {
+        int tail = head + size;
+        if (tail >= buffer.length) {
+            tail -= buffer.length;
+        }
+        buffer[tail] = arcId;
+    }
+
+
+    @Override
+    protected int pop() {
+        int arcId = buffer[head];
+        if (++head == buffer.length) {
+            head = 0;
+        }
+        return arcId;
+    }
+}
@@ -1,23 +1,50 @@
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @SuppressWarnings("Duplicates")
 /**
  * Class which implements the forward checking algorithm
  */
-public class ForwardChecking {
+public class ForwardChecking implements Solver {
 
 
     private BinaryCSP csp;
-    // current node under consideration
+    // search state, shared by every node of the search tree and restored on backtrack
     private Node currentNode;
     private long startTime;
     private long endTime;
     // flag indicating whether dynamic variable ordering is used
     private boolean dynamicOrdering;
+    // heuristic of dynamic ordering
+    private VarHeuristic heuristic = VarHeuristic.DOM;
+    // heuristic of value ordering
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    // flag indicating whether revise uses residual supports
+    private boolean residualRevise;
+    // set, possibly by another thread, to make the search stop
+    private AtomicBoolean stopFlag = new AtomicBoolean(false);
+    // values of the first solution found, if any
+    private int[] solution;
+    // number of solutions to find before stopping, 0 for all of them
+    private long solutionLimit = 1;
+    private long solutionCount;
+    // receives every solution found, if set
+    private SolutionListener listener;
+    // whether revisions are timed and depths histogrammed, and the metrics printed
+    private boolean detailedMetrics;
+    // restart strategy, or null to search in a single run
+    private RestartPolicy restartPolicy;
+    private long seed;
+    // nogoods learnt at restarts, null when not restarting
+    private NogoodStore nogoods;
+    // node count at which the current run is cut off
+    private long nodeLimit = Long.MAX_VALUE;
+    // set when the current run has been cut off
+    private boolean restarting;
+    private int restartCount;
 
 
     /**
@@ -27,9 +54,23 @@ public class ForwardChecking {
      */
     public ForwardChecking(BinaryCSP csp, boolean dynamicOrdering) {
         this.csp = csp;
-        HashMap<Integer, ArrayList<Integer>> variablesMap = initVariablesMap();
+        DomainStore domains = initDomains();
         ArrayList<Integer> varList = initVarList();
-        this.currentNode = new Node(csp, variablesMap, varList);;
+        this.currentNode = new Node(csp, domains, varList);
+        this.dynamicOrdering = dynamicOrdering;
+    }
+
+
+    /**
+     * Class constructor for a search that starts from a given state instead of the full domains, e.g. a subproblem
+     * produced by Decomposer.
+     * @param csp the instance representing the binary constraint problem.
+     * @param dynamicOrdering flag indicating whether dynamic ordering will be used.
+     * @param root search state to start from, which the solver takes over.
+     */
+    public ForwardChecking(BinaryCSP csp, boolean dynamicOrdering, Node root) {
+        this.csp = csp;
+        this.currentNode = root;
         this.dynamicOrdering = dynamicOrdering;
     }
 
@@ -39,7 +80,6 @@ public class ForwardChecking {
      * Essentially, the varList of the root node.
      */
     public ArrayList<Integer> initVarList() {
-        System.out.println("Initialising variables list...\n");
         ArrayList<Integer> varList = new ArrayList<>();
         int nVars = csp.getNoVariables();
         // vars will be 0, 1, 2 ... (nVars - 1)
@@ -51,58 +91,201 @@ public class ForwardChecking {
 
 
     /**
-     * Method which initialises the data structure which maps a variable to the values in its domain
+     * Method which initialises the domain store holding the values in every variable's domain
      */
-    public HashMap<Integer, ArrayList<Integer>> initVariablesMap() {
-        System.out.println("Initialising variables map...\n");
-        HashMap<Integer, ArrayList<Integer>> variablesMap = new HashMap<>();
-        int nVars = csp.getNoVariables();
-        // vars will be 0, 1, 2 ... (nVars - 1)
-        for (int i = 0; i < nVars; i++) {
-            // find lower and upper bound of variable's domain
-            int lowerBound = csp.getLB(i);
-            int upperBound = csp.getUB(i);
-            // populate domain of variable
-            ArrayList<Integer> domainSet = new ArrayList<>();
-            for (int j = lowerBound; j <= upperBound; j++) {
-                domainSet.add(j);
-            }
-            Collections.sort(domainSet);
-            variablesMap.put(i, domainSet);
-        }
-        return variablesMap;
+    public DomainStore initDomains() {
+        return new DomainStore(csp);
+    }
+
+
+    /**
+     * Selects the AC3rm revise, which reuses residual supports, instead of the default one.
+     * @param residualRevise flag indicating whether residual supports will be used.
+     */
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+        currentNode.setResidualRevise(residualRevise);
+    }
+
+
+    /**
+     * Selects the heuristic of dynamic variable ordering, which this turns on: smallest domain (as with
+     * dynamicOrdering), dom/deg or dom/wdeg.
+     * @param heuristic the dynamic variable ordering heuristic.
+     */
+    public void setVarHeuristic(VarHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.dynamicOrdering = true;
+        currentNode.setVarHeuristic(heuristic);
+    }
+
+
+    /**
+     * Selects the heuristic of value ordering: smallest value, or one of the support counting orderings.
+     * @param valHeuristic the value ordering heuristic.
+     */
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+        currentNode.setValHeuristic(valHeuristic);
+    }
+
+
+    /**
+     * Turns on restarts: each run is cut off after the policy's number of nodes, the nogoods of the branch it was on
+     * are kept, and search starts again from the root. Ties in variable selection are broken at random, from the given
+     * seed, so that runs differ. Values keep their deterministic order. Restarts only apply when looking for a single solution.
+     * @param restartPolicy cutoffs of the runs.
+     * @param seed seed of the random tie-breaking.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy, long seed) {
+        this.restartPolicy = restartPolicy;
+        this.seed = seed;
+    }
+
+
+    @Override
+    public void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+
+    @Override
+    public void setSolutionLimit(long solutionLimit) {
+        this.solutionLimit = solutionLimit;
+    }
+
+
+    @Override
+    public void setSolutionListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+
+    @Override
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+        currentNode.getMetrics().setTiming(detailedMetrics);
+        currentNode.getMetrics().setDepthHistograms(detailedMetrics);
     }
 
 
     /**
      * Method called from Main to initiate the algorithm.
      */
+    @Override
     public void solve() {
+        System.out.println("Initialising variables list and domains...\n");
         System.out.println("Begin solving with Forward Checking solver...\n");
-        if (dynamicOrdering) {
+        if (dynamicOrdering && heuristic != VarHeuristic.DOM) {
+            System.out.println("Using dynamic " + heuristic.getLabel() + " heuristic...\n");
+        }
+        else if (dynamicOrdering) {
             System.out.println("Using dynamic smallest domain heuristic...\n");
         }
         else {
             System.out.println("Using static ascending variable strategy...\n");
         }
+        if (residualRevise) {
+            System.out.println("Using residual supports in revise...\n");
+        }
+        if (valHeuristic != ValHeuristic.MIN) {
+            System.out.println("Using " + valHeuristic.getLabel() + " value ordering...\n");
+        }
+        if (restartPolicy != null && solutionLimit == 1) {
+            System.out.println("Using " + restartPolicy.getLabel() + " restarts...\n");
+        }
+        if (solutionLimit != 1) {
+            System.out.println(solutionLimit == 0 ? "Searching for all solutions...\n"
+                    : "Searching for up to " + solutionLimit + " solutions...\n");
+            search();
+            System.out.println("Number of solutions: " + solutionCount);
+        } else if (search()) {
+            System.out.println("Solution found");
+            currentNode.printNodeDetails();
+        } else {
+            System.out.println("No solution found");
+        }
+        System.out.println("Number of nodes: " + currentNode.getNodeCount());
+        System.out.println("Number of arc revisions: " + currentNode.getRevisionCount());
+        printRestartStats();
+        System.out.println("Time elapsed: " + Long.toString(getElapsedTime()) + "ms");
+        if (detailedMetrics) {
+            System.out.print("\nSearch metrics:\n" + getMetrics());
+        }
+    }
+
+
+    @Override
+    public boolean search() {
+        SearchEvent event = new SearchEvent();
+        event.begin();
         startTime = System.currentTimeMillis();
-        forwardChecking(currentNode);
+        solution = null;
+        solutionCount = 0;
+        nogoods = null;
+        if (restartPolicy != null && solutionLimit == 1) {
+            restartSearch();
+        } else {
+            forwardChecking(currentNode);
+        }
+        endTime = System.currentTimeMillis();
+        event.finish(this);
+        if (listener != null) {
+            listener.searchFinished();
+        }
+        return solution != null;
+    }
+
+
+    /**
+     * Searches in runs cut off by the restart policy. Before each new run, the node is taken back to the root and the
+     * nogoods of the branch the last run stopped on are added and propagated.
+     */
+    private void restartSearch() {
+        currentNode.setRandom(new Random(seed));
+        nogoods = new NogoodStore(csp);
+        restartCount = 0;
+        int rootLevel = currentNode.getTrail().getLevel();
+        while (true) {
+            nodeLimit = currentNode.getNodeCount() + restartPolicy.cutoff(restartCount);
+            restarting = false;
+            if (!forwardChecking(currentNode) || !restarting) {
+                break;
+            }
+            restartCount++;
+            ArrayList<int[]> learnt = nogoods.branchNogoods(currentNode, rootLevel);
+            currentNode.backtrackTo(rootLevel);
+            int from = currentNode.getTrail().size();
+            boolean consistent = true;
+            for (int[] nogood : learnt) {
+                consistent = consistent && nogoods.add(nogood, currentNode);
+            }
+            // values deleted by nogoods need no revising: forward checking only checks future variables against
+            // assigned ones
+            if (!consistent || !nogoods.propagate(currentNode, from)) {
+                break;
+            }
+        }
+        nodeLimit = Long.MAX_VALUE;
+        currentNode.setRandom(null);
     }
 
 
     /**
      * The main recursive procedure of the forward checking algorithm.
      * @param node
+     * @return true if the search is over, because the last solution wanted was found or the search was stopped.
      */
-    public void forwardChecking(Node node) {
+    public boolean forwardChecking(Node node) {
         if (node.completeAssignment()) {
-            endTime = System.currentTimeMillis();
-            System.out.println("Solution found");
-            node.printNodeDetails();
-            System.out.println("Number of nodes: " + Node.nodeCount);
-            System.out.println("Number of arc revisions: " + Node.revisionCount);
-            System.out.println("Time elapsed: " + Long.toString(endTime - startTime) + "ms");
-            System.exit(0);
+            return solutionFound(node);
+        }
+        if (stopFlag.get()) {
+            return true;
+        }
+        if (node.getNodeCount() >= nodeLimit) {
+            restarting = true;
+            return true;
         }
 
         int var;
@@ -113,8 +296,7 @@ public class ForwardChecking {
             var = node.selectVar();
         }
         int val = node.selectVal(var);
-        branchFCLeft(node, var, val);
-        branchFCRight(node, var, val);
+        return branchFCLeft(node, var, val) || branchFCRight(node, var, val);
     }
 
 
@@ -124,21 +306,22 @@ public class ForwardChecking {
      * @param node essentially the parent node of the node that will result from the assignment
      * @param var selected var
      * @param val value which will be assigned to var
+     * @return true if the search is over. The node is then left as it is, holding the solution.
      */
-    public void branchFCLeft(Node node, int var, int val) {
-        // used in order to undo pruning if necessary
-        Node prevNode = node;
-        Node leftNode = new Node(csp, node.getVariablesMap(), node.getVarList());
-
-        leftNode.assign(var, val);
+    public boolean branchFCLeft(Node node, int var, int val) {
+        node.pushLevel();
 
-        if (leftNode.reviseFutureArcs(var)) {
+        node.assign(var, val);
 
-            currentNode = leftNode;
-            forwardChecking(leftNode);
+        if (propagate(node, var)) {
+            if (forwardChecking(node)) {
+                return true;
+            }
         }
 
-        currentNode = prevNode;
+        // undo the assignment and its pruning
+        node.popLevel();
+        return false;
     }
 
 
@@ -148,24 +331,113 @@ public class ForwardChecking {
      * @param node essentially the parent node of the node that will result from the assignment.
      * @param var selected var.
      * @param val value which will be deleted from var's domain.
+     * @return true if the search is over. The node is then left as it is, holding the solution.
      */
-    public void branchFCRight(Node node, int var, int val) {
-        Node rightNode = new Node(csp, node.getVariablesMap(), node.getVarList());
-        // used in order to undo pruning if necessary
-        Node prevNode = node;
+    public boolean branchFCRight(Node node, int var, int val) {
+        node.pushLevel();
 
-        rightNode.deleteValue(var, val);
+        node.deleteValue(var, val);
 
-        if (!rightNode.getVariablesMap().get(var).isEmpty()) {
-            if (rightNode.reviseFutureArcs(var)) {
-                currentNode = rightNode;
-                forwardChecking(rightNode);
+        if (!node.getDomains().isEmpty(var)) {
+            if (propagate(node, var)) {
+                if (forwardChecking(node)) {
+                    return true;
+                }
             }
         }
-        currentNode = prevNode;
 
+        // undo the deletion and its pruning
+        node.popLevel();
+        return false;
+    }
+
+
+    /**
+     * Revises the future variables against var after a decision on it, then propagates the nogoods if restarting.
+     * @return false if a domain was wiped out or a nogood violated.
+     */
+    private boolean propagate(Node node, int var) {
+        if (!node.reviseFutureArcs(var)) {
+            return false;
+        }
+        return nogoods == null || nogoods.propagate(node, node.getTrail().getLevelStart());
+    }
+
+
+    /**
+     * Method called on every complete assignment. Keeps the first solution and passes each one to the listener.
+     * @param node search state holding the solution.
+     * @return true if the search is over: the solution limit has been reached or the listener asked to stop.
+     */
+    private boolean solutionFound(Node node) {
+        solutionCount++;
+        if (solution == null) {
+            solution = node.getAssignment();
+        }
+        boolean more = listener == null || listener.solutionFound(node.getDomains());
+        return !more || solutionCount == solutionLimit;
     }
 
 
+    /**
+     * Prints the number of restarts and what the nogoods learnt at them did, if restarting.
+     */
+    private void printRestartStats() {
+        if (nogoods != null) {
+            System.out.println("Restarts: " + restartCount + ", nogoods: " + nogoods.size()
+                    + ", values deleted by nogoods: " + nogoods.getValuesDeleted());
+        }
+    }
+
+
+    @Override
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+
+    @Override
+    public int[] getSolution() {
+        return solution;
+    }
+
+
+    @Override
+    public Node getNode() {
+        return currentNode;
+    }
+
+
+    @Override
+    public long getNodeCount() {
+        return currentNode.getNodeCount();
+    }
+
+
+    @Override
+    public long getRevisionCount() {
+        return currentNode.getRevisionCount();
+    }
+
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return currentNode.getMetrics();
+    }
+
+
+    @Override
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+
+
+    @Override
+    public String getName() {
+        return "FC (" + (dynamicOrdering ? heuristic.getLabel() : "static") + (residualRevise ? ", AC3rm" : "")
+                + (valHeuristic != ValHeuristic.MIN ? ", " + valHeuristic.getLabel() : "")
+                + (restartPolicy != null ? ", " + restartPolicy.getLabel() + " restarts" : "") + ")";
+    }
+
 
 }
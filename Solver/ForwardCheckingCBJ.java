@@ -0,0 +1,392 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+@SuppressWarnings("Duplicates")
+/**
+ * Class which implements forward checking with conflict-directed backjumping (FC-CBJ, Prosser 1993). Each variable is
+ * tried with every value of its domain in turn, one decision level per assignment. The solver keeps track of which
+ * past assignments pruned values from each future variable, and the conflict set of every assigned variable: the past
+ * assignments that caused its values to fail.
+ *
+ * When a value's forward check wipes out a future domain, the assignments that pruned that domain join the conflict
+ * set. Once every value has failed, search jumps straight back to the deepest assignment in the conflict set, together
+ * with the assignments that pruned the variable's own domain, skipping every level in between, and passes the rest of
+ * the conflict set on to it.
+ */
+public class ForwardCheckingCBJ implements Solver {
+
+    // returned by fcCbj once the search is over
+    private static final int DONE = -1;
+
+    private BinaryCSP csp;
+    // search state, shared by every node of the search tree and restored on backtrack
+    private Node currentNode;
+    private long startTime;
+    private long endTime;
+    // flag indicating whether dynamic variable ordering is used
+    private boolean dynamicOrdering;
+    // heuristic of dynamic ordering
+    private VarHeuristic heuristic = VarHeuristic.DOM;
+    // heuristic of value ordering
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    // flag indicating whether revise uses residual supports
+    private boolean residualRevise;
+    // set, possibly by another thread, to make the search stop
+    private AtomicBoolean stopFlag = new AtomicBoolean(false);
+    // values of the first solution found, if any
+    private int[] solution;
+    // number of solutions to find before stopping, 0 for all of them
+    private long solutionLimit = 1;
+    private long solutionCount;
+    // receives every solution found, if set
+    private SolutionListener listener;
+    // whether revisions are timed and depths histogrammed, and the metrics printed
+    private boolean detailedMetrics;
+
+    // decision level of the root of the search; assignments are made on the levels below it
+    private int rootLevel;
+    // prunedBy[var] holds the levels whose assignment pruned values from the domain of var
+    private BitSet[] prunedBy;
+    // conflictSets[level] holds the levels whose assignments made the values of that level's variable fail
+    private BitSet[] conflictSets;
+    // backjumps past at least one level, and the levels they skipped
+    private long backjumps;
+    private long levelsSkipped;
+
+
+    /**
+     * Class constructor.
+     * @param csp the instance representing the binary constraint problem.
+     * @param dynamicOrdering flag indicating whether dynamic ordering will be used.
+     */
+    public ForwardCheckingCBJ(BinaryCSP csp, boolean dynamicOrdering) {
+        this.csp = csp;
+        ArrayList<Integer> varList = new ArrayList<>();
+        for (int i = 0; i < csp.getNoVariables(); i++) {
+            varList.add(i);
+        }
+        this.currentNode = new Node(csp, new DomainStore(csp), varList);
+        this.dynamicOrdering = dynamicOrdering;
+    }
+
+
+    /**
+     * Class constructor for a search that starts from a given state instead of the full domains, e.g. a subproblem
+     * produced by Decomposer.
+     * @param csp the instance representing the binary constraint problem.
+     * @param dynamicOrdering flag indicating whether dynamic ordering will be used.
+     * @param root search state to start from, which the solver takes over.
+     */
+    public ForwardCheckingCBJ(BinaryCSP csp, boolean dynamicOrdering, Node root) {
+        this.csp = csp;
+        this.currentNode = root;
+        this.dynamicOrdering = dynamicOrdering;
+    }
+
+
+    /**
+     * Selects the AC3rm revise, which reuses residual supports, instead of the default one.
+     * @param residualRevise flag indicating whether residual supports will be used.
+     */
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+        currentNode.setResidualRevise(residualRevise);
+    }
+
+
+    /**
+     * Selects the heuristic of dynamic variable ordering, which this turns on: smallest domain (as with
+     * dynamicOrdering), dom/deg or dom/wdeg.
+     * @param heuristic the dynamic variable ordering heuristic.
+     */
+    public void setVarHeuristic(VarHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.dynamicOrdering = true;
+        currentNode.setVarHeuristic(heuristic);
+    }
+
+
+    /**
+     * Selects the heuristic of value ordering, which decides the order in which the values of a variable are tried.
+     * @param valHeuristic the value ordering heuristic.
+     */
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+        currentNode.setValHeuristic(valHeuristic);
+    }
+
+
+    @Override
+    public void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+
+    @Override
+    public void setSolutionLimit(long solutionLimit) {
+        this.solutionLimit = solutionLimit;
+    }
+
+
+    @Override
+    public void setSolutionListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+
+    @Override
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+        currentNode.getMetrics().setTiming(detailedMetrics);
+        currentNode.getMetrics().setDepthHistograms(detailedMetrics);
+    }
+
+
+    /**
+     * Method called from Main to initiate the algorithm.
+     */
+    @Override
+    public void solve() {
+        System.out.println("Initialising variables list and domains...\n");
+        System.out.println("Begin solving with Forward Checking and conflict-directed backjumping...\n");
+        if (dynamicOrdering && heuristic != VarHeuristic.DOM) {
+            System.out.println("Using dynamic " + heuristic.getLabel() + " heuristic...\n");
+        }
+        else if (dynamicOrdering) {
+            System.out.println("Using dynamic smallest domain heuristic...\n");
+        }
+        else {
+            System.out.println("Using static ascending variable strategy...\n");
+        }
+        if (residualRevise) {
+            System.out.println("Using residual supports in revise...\n");
+        }
+        if (valHeuristic != ValHeuristic.MIN) {
+            System.out.println("Using " + valHeuristic.getLabel() + " value ordering...\n");
+        }
+        if (solutionLimit != 1) {
+            System.out.println(solutionLimit == 0 ? "Searching for all solutions...\n"
+                    : "Searching for up to " + solutionLimit + " solutions...\n");
+            search();
+            System.out.println("Number of solutions: " + solutionCount);
+        } else if (search()) {
+            System.out.println("Solution found");
+            currentNode.printNodeDetails();
+        } else {
+            System.out.println("No solution found");
+        }
+        System.out.println("Number of nodes: " + currentNode.getNodeCount());
+        System.out.println("Number of arc revisions: " + currentNode.getRevisionCount());
+        System.out.println("Backjumps: " + backjumps + ", levels skipped: " + levelsSkipped);
+        System.out.println("Time elapsed: " + Long.toString(getElapsedTime()) + "ms");
+        if (detailedMetrics) {
+            System.out.print("\nSearch metrics:\n" + getMetrics());
+        }
+    }
+
+
+    @Override
+    public boolean search() {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        startTime = System.currentTimeMillis();
+        solution = null;
+        solutionCount = 0;
+        backjumps = 0;
+        levelsSkipped = 0;
+        rootLevel = currentNode.getTrail().getLevel();
+        prunedBy = new BitSet[csp.getNoVariables()];
+        for (int var = 0; var < prunedBy.length; var++) {
+            prunedBy[var] = new BitSet();
+        }
+        conflictSets = new BitSet[rootLevel + csp.getNoVariables() + 1];
+        for (int level = 0; level < conflictSets.length; level++) {
+            conflictSets[level] = new BitSet();
+        }
+        if (currentNode.completeAssignment()) {
+            solutionFound(currentNode);
+        } else {
+            fcCbj(currentNode);
+        }
+        endTime = System.currentTimeMillis();
+        event.finish(this);
+        if (listener != null) {
+            listener.searchFinished();
+        }
+        return solution != null;
+    }
+
+
+    /**
+     * The main recursive procedure of FC-CBJ. Selects a variable and tries its values one by one, each on a new
+     * decision level. A value that has been tried is deleted on the level above, so that selectVal moves on to the
+     * next one and the variable's domain runs out once all have failed.
+     * @param node
+     * @return DONE if the search is over, because the last solution wanted was found or the search was stopped. The
+     * node is then left as it is, holding the solution. Otherwise the level to jump back to, which has been given the
+     * conflict set; rootLevel if there is none, as the search then has no solution.
+     */
+    private int fcCbj(Node node) {
+        if (stopFlag.get()) {
+            return DONE;
+        }
+        int var = dynamicOrdering ? node.selectVarDynamic() : node.selectVar();
+        int level = node.getTrail().getLevel() + 1;
+        BitSet conflicts = conflictSets[level];
+        conflicts.clear();
+
+        while (!node.getDomains().isEmpty(var)) {
+            int val = node.selectVal(var);
+            node.pushLevel();
+            node.assign(var, val);
+
+            int wipedOut = forwardCheck(node, var, level);
+            if (wipedOut != -1) {
+                conflicts.or(prunedBy[wipedOut]);
+            } else if (node.completeAssignment()) {
+                if (solutionFound(node)) {
+                    return DONE;
+                }
+                // when enumerating, every earlier assignment is a reason to try the next value
+                conflicts.set(rootLevel + 1, level);
+            } else {
+                int target = fcCbj(node);
+                if (target == DONE) {
+                    return DONE;
+                }
+                if (target < level) {
+                    undo(node, level);
+                    return target;
+                }
+            }
+            undo(node, level);
+            node.deleteValue(var, val);
+        }
+
+        // every value failed, because of the assignments in the conflict set or those that pruned the domain of var
+        conflicts.or(prunedBy[var]);
+        conflicts.clear(level);
+        int target = conflicts.length() - 1;
+        if (target <= rootLevel) {
+            return rootLevel;
+        }
+        conflictSets[target].or(conflicts);
+        conflictSets[target].clear(target);
+        if (target < level - 1) {
+            backjumps++;
+            levelsSkipped += level - 1 - target;
+        }
+        return target;
+    }
+
+
+    /**
+     * Revises the future variables against var, just assigned on the given level, and records which of them it pruned.
+     * @return a variable whose domain was wiped out, or -1 if there is none.
+     */
+    private int forwardCheck(Node node, int var, int level) {
+        boolean consistent = node.reviseFutureArcs(var);
+        Trail trail = node.getTrail();
+        for (int k = trail.getLevelStart(); k < trail.size(); k++) {
+            int pruned = trail.getVar(k);
+            if (pruned != var) {
+                prunedBy[pruned].set(level);
+            }
+        }
+        if (consistent) {
+            return -1;
+        }
+        for (int future = node.nextUnassigned(0); future != -1; future = node.nextUnassigned(future + 1)) {
+            if (node.getDomains().isEmpty(future)) {
+                return future;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Backtracks out of the given level, which must be the current one, forgetting what its assignment pruned.
+     */
+    private void undo(Node node, int level) {
+        Trail trail = node.getTrail();
+        for (int k = trail.getLevelStart(); k < trail.size(); k++) {
+            prunedBy[trail.getVar(k)].clear(level);
+        }
+        node.popLevel();
+    }
+
+
+    /**
+     * Method called on every complete assignment. Keeps the first solution and passes each one to the listener.
+     * @param node search state holding the solution.
+     * @return true if the search is over: the solution limit has been reached or the listener asked to stop.
+     */
+    private boolean solutionFound(Node node) {
+        solutionCount++;
+        if (solution == null) {
+            solution = node.getAssignment();
+        }
+        boolean more = listener == null || listener.solutionFound(node.getDomains());
+        return !more || solutionCount == solutionLimit;
+    }
+
+
+    @Override
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+
+    @Override
+    public int[] getSolution() {
+        return solution;
+    }
+
+
+    @Override
+    public Node getNode() {
+        return currentNode;
+    }
+
+
+    @Override
+    public long getNodeCount() {
+        return currentNode.getNodeCount();
+    }
+
+
+    @Override
+    public long getRevisionCount() {
+        return currentNode.getRevisionCount();
+    }
+
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return currentNode.getMetrics();
+    }
+
+
+    /**
+     * @return number of times search jumped back past at least one level.
+     */
+    public long getBackjumps() {
+        return backjumps;
+    }
+
+
+    @Override
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+
+
+    @Override
+    public String getName() {
+        return "FC-CBJ (" + (dynamicOrdering ? heuristic.getLabel() : "static") + (residualRevise ? ", AC3rm" : "")
+                + (valHeuristic != ValHeuristic.MIN ? ", " + valHeuristic.getLabel() : "") + ")";
+    }
+}
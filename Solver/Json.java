@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+
+/**
+ * Minimal JSON support for the line-based protocol of SolverDaemon: parses one object per line and quotes strings for
+ * output. Numbers are read as Long when they are integers and as Double otherwise; arrays become ArrayLists and objects
+ * LinkedHashMaps.
+ */
+public final class Json {
+
+    private String text;
+    private int pos;
+
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+
+    /**
+     * Parses a JSON object.
+     *
+     * @throws IllegalArgumentException if the text is not a single JSON object.
+     */
+    @SuppressWarnings("unchecked")
+    public static LinkedHashMap<String, Object> parseObject(String text) {
+        Json json = new Json(text);
+        json.skipBlanks();
+        if (json.peek() != '{') {
+            throw json.error("expected an object");
+        }
+        Object value = json.readValue();
+        json.skipBlanks();
+        if (json.pos != text.length()) {
+            throw json.error("unexpected text after the object");
+        }
+        return (LinkedHashMap<String, Object>) value;
+    }
+
+
+    /**
+     * @return the string as a JSON string literal, quotes included.
+     */
+    public static String quote(String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+
+    private Object readValue() {
+        skipBlanks();
+        char c = peek();
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+
+    private LinkedHashMap<String, Object> readObject() {
+        LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+        pos++;
+        skipBlanks();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        while (true) {
+            skipBlanks();
+            if (peek() != '"') {
+                throw error("expected a member name");
+            }
+            String name = readString();
+            skipBlanks();
+            expect(':');
+            object.put(name, readValue());
+            skipBlanks();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+
+    private ArrayList<Object> readArray() {
+        ArrayList<Object> array = new ArrayList<>();
+        pos++;
+        skipBlanks();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipBlanks();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+
+    private String readString() {
+        StringBuilder s = new StringBuilder();
+        pos++;
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return s.toString();
+            }
+            if (c != '\\') {
+                s.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case 'n':
+                    s.append('\n');
+                    break;
+                case 't':
+                    s.append('\t');
+                    break;
+                case 'r':
+                    s.append('\r');
+                    break;
+                case 'b':
+                    s.append('\b');
+                    break;
+                case 'f':
+                    s.append('\f');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("truncated escape");
+                    }
+                    try {
+                        s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("bad escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    // \" \\ \/
+                    s.append(c);
+            }
+        }
+    }
+
+
+    private Object readNumber() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        String number = text.substring(start, pos);
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("bad number " + number);
+        }
+    }
+
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("unexpected character '" + peek() + "'");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+
+    private void skipBlanks() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("unexpected end of input");
+        }
+        return text.charAt(pos);
+    }
+
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON: " + message + " at position " + pos);
+    }
+}
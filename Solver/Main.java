@@ -1,3 +1,13 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
 public class Main {
 
 
@@ -6,12 +16,24 @@ public class Main {
         // input .csp file
         String file = args[0];
 
-        BinaryCSP csp = new BinaryCSPReader().readBinaryCSP(file);
+        BinaryCSP csp;
+        try {
+            // files compiled by BinaryCSPCompiler are memory-mapped, anything else is read as text
+            csp = CSPSolver.read(file);
+        } catch (IOException e) {
+            System.err.println(e);
+            return;
+        }
 
         // reading and processing command line arguments
         // adapted from: http://journals.ecs.soton.ac.uk/java/tutorial/java/cmdLineArgs/parsing.html
-        boolean dynamicOrdering = false;
-        boolean mac = false;
+        // the flags that select the solver are passed on to SolverOptions, Main keeps those of its output
+        boolean portfolio = false;
+        boolean allSolutions = false;
+        boolean countOnly = false;
+        boolean limited = false;
+        String outputFile = null;
+        ArrayList<String> solverFlags = new ArrayList<>();
         int i = 1;
         int j;
         char flag;
@@ -19,35 +41,123 @@ public class Main {
 
         while (i < args.length && args[i].startsWith("-")) {
             arg = args[i++];
+            StringBuilder forwarded = new StringBuilder("-");
 
             for (j = 1; j < arg.length(); j++) {
                 flag = arg.charAt(j);
                 switch (flag) {
-                    // mac3 algorithm to be used. If absent fc algorithm is used.
-                    case 'm':
-                        mac = true;
+                    // run several configurations concurrently; the first to finish wins
+                    case 'P':
+                        portfolio = true;
+                        break;
+                    // enumerate every solution, writing one per line
+                    case 'a':
+                        allSolutions = true;
+                        break;
+                    // write the solutions to a file instead of the standard output
+                    case 'o':
+                        if (i < args.length) {
+                            outputFile = args[i++];
+                            allSolutions = true;
+                        } else {
+                            System.err.println("ParseCmdLine: -o requires a file name");
+                        }
+                        break;
+                    // count every solution without writing them
+                    case 'c':
+                        countOnly = true;
+                        forwarded.append(flag);
                         break;
-                    // dynamic ordering to be used. If absent static ordering is used.
-                    case 'd':
-                        dynamicOrdering = true;
+                    // propagation engine, variable or value ordering heuristic, restart policy, seed, threads or
+                    // solution limit, passed on with its value. With -l, the solutions found are written
+                    case 'p':
+                    case 'D':
+                    case 'v':
+                    case 'R':
+                    case 'S':
+                    case 't':
+                    case 'l':
+                        if (flag == 'l') {
+                            allSolutions = true;
+                            limited = true;
+                        }
+                        forwarded.append(flag);
+                        if (i < args.length) {
+                            solverFlags.add(forwarded.toString());
+                            solverFlags.add(args[i++]);
+                            forwarded = new StringBuilder("-");
+                        }
                         break;
                     default:
-                        System.err.println("ParseCmdLine: illegal option " + flag);
+                        forwarded.append(flag);
                         break;
                 }
             }
+            if (forwarded.length() > 1) {
+                solverFlags.add(forwarded.toString());
+            }
         }
 
-        // Initiate solvers.
-        if (mac) {
-            MaintainArcConsistency macSolver = new MaintainArcConsistency(csp, dynamicOrdering);
-            macSolver.solve();
-        } else {
-            ForwardChecking fcSolver = new ForwardChecking(csp, dynamicOrdering);
-            fcSolver.solve();
+        SolverOptions options;
+        try {
+            if (countOnly && outputFile != null) {
+                throw new IllegalArgumentException("-o cannot be combined with -c, which writes no solutions");
+            }
+            options = SolverOptions.parse(solverFlags.toArray(new String[0]));
+            // -a and -o look for every solution unless -l gives a limit
+            if (allSolutions && !limited) {
+                options.setSolutionLimit(0);
+            }
+            options.validate();
+        } catch (IllegalArgumentException e) {
+            System.err.println("ParseCmdLine: " + e.getMessage());
+            return;
         }
 
+        if (options.isPreprocess()) {
+            Preprocessor preprocessor = new Preprocessor(csp);
+            csp = preprocessor.preprocess();
+            System.out.println(preprocessor.getReport() + "\n");
+            if (!preprocessor.isConsistent()) {
+                System.out.println(allSolutions || countOnly ? "Number of solutions: 0" : "No solution found");
+                return;
+            }
+        }
 
+        // Initiate solvers.
+        if (portfolio) {
+            new Portfolio(csp).solve();
+            return;
+        }
+        Solver solver = new CSPSolver(options).createSolver(csp, null);
+
+        if (!allSolutions && !countOnly) {
+            solver.solve();
+            return;
+        }
+        if (countOnly) {
+            solver.solve();
+            return;
+        }
+        // enumeration: solutions are streamed out as they are found
+        try {
+            Writer writer;
+            if (outputFile != null) {
+                writer = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.US_ASCII);
+            } else {
+                writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+            }
+            solver.setSolutionListener(new SolutionWriter(writer, csp.getNoVariables()));
+            solver.solve();
+            // the standard output is only flushed, by SolutionWriter, and stays open
+            if (outputFile != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        } catch (UncheckedIOException e) {
+            System.err.println(e.getCause());
+        }
     }
 
 }
@@ -1,20 +1,51 @@
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @SuppressWarnings("Duplicates")
 /**
  * Class which implements the MAC3 algorithm
  */
-public class MaintainArcConsistency {
+public class MaintainArcConsistency implements Solver {
 
     private BinaryCSP csp;
-    // current node under consideration
+    // search state, shared by every node of the search tree and restored on backtrack
     private Node currentNode;
     private long startTime;
     private long endTime;
     private boolean dynamicOrdering;
+    // heuristic of dynamic ordering
+    private VarHeuristic heuristic = VarHeuristic.DOM;
+    // heuristic of value ordering
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    // flag indicating whether revise uses residual supports
+    private boolean residualRevise;
+    // flag indicating whether ac3 revises the arcs of the smallest domains first
+    private boolean domainOrderedQueue;
+    // engine restoring arc consistency after each decision
+    private Propagator propagator;
+    // set, possibly by another thread, to make the search stop
+    private AtomicBoolean stopFlag = new AtomicBoolean(false);
+    // values of the first solution found, if any
+    private int[] solution;
+    // number of solutions to find before stopping, 0 for all of them
+    private long solutionLimit = 1;
+    private long solutionCount;
+    // receives every solution found, if set
+    private SolutionListener listener;
+    // whether revisions are timed and depths histogrammed, and the metrics printed
+    private boolean detailedMetrics;
+    // restart strategy, or null to search in a single run
+    private RestartPolicy restartPolicy;
+    private long seed;
+    // nogoods learnt at restarts, null when not restarting
+    private NogoodStore nogoods;
+    // node count at which the current run is cut off
+    private long nodeLimit = Long.MAX_VALUE;
+    // set when the current run has been cut off
+    private boolean restarting;
+    private int restartCount;
 
 
     /**
@@ -24,10 +55,26 @@ public class MaintainArcConsistency {
      */
     public MaintainArcConsistency(BinaryCSP csp, boolean dynamicOrdering) {
         this.csp = csp;
-        HashMap<Integer, ArrayList<Integer>> variablesMap = initVariablesMap();
+        DomainStore domains = initDomains();
         ArrayList<Integer> varList = initVarList();
-        this.currentNode = new Node(csp, variablesMap, varList);
+        this.currentNode = new Node(csp, domains, varList);
         this.dynamicOrdering = dynamicOrdering;
+        this.propagator = new AC3Propagator();
+    }
+
+
+    /**
+     * Class constructor for a search that starts from a given state instead of the full domains, e.g. a subproblem
+     * produced by Decomposer.
+     * @param csp the instance representing the binary constraint problem.
+     * @param dynamicOrdering flag indicating whether dynamic ordering will be used.
+     * @param root search state to start from, which the solver takes over.
+     */
+    public MaintainArcConsistency(BinaryCSP csp, boolean dynamicOrdering, Node root) {
+        this.csp = csp;
+        this.currentNode = root;
+        this.dynamicOrdering = dynamicOrdering;
+        this.propagator = new AC3Propagator();
     }
 
 
@@ -36,7 +83,6 @@ public class MaintainArcConsistency {
      * Essentially, the varList of the root node.
      */
     public ArrayList<Integer> initVarList() {
-        System.out.println("Initialising variables list...\n");
         ArrayList<Integer> varList = new ArrayList<>();
         int nVars = csp.getNoVariables();
         // vars will be 0, 1, 2 ... (nVars - 1)
@@ -48,51 +94,231 @@ public class MaintainArcConsistency {
 
 
     /**
-     * Method which initialises the data structure which maps a variable to the values in its domain
+     * Method which initialises the domain store holding the values in every variable's domain
      */
-    public HashMap<Integer, ArrayList<Integer>> initVariablesMap() {
-        System.out.println("Initialising variables map...\n");
-        HashMap<Integer, ArrayList<Integer>> variablesMap = new HashMap<>();
-        int nVars = csp.getNoVariables();
-        // vars will be 0, 1, 2 ... (nVars - 1)
-        for (int i = 0; i < nVars; i++) {
-            // find lower and upper bound of variable's domain
-            int lowerBound = csp.getLB(i);
-            int upperBound = csp.getUB(i);
-            // populate domain of variable
-            ArrayList<Integer> domainSet = new ArrayList<>();
-            for (int j = lowerBound; j <= upperBound; j++) {
-                domainSet.add(j);
-            }
-            Collections.sort(domainSet);
-            variablesMap.put(i, domainSet);
-        }
-        return variablesMap;
+    public DomainStore initDomains() {
+        return new DomainStore(csp);
+    }
+
+
+    /**
+     * Selects the AC3rm revise, which reuses residual supports, instead of the default one.
+     * @param residualRevise flag indicating whether residual supports will be used.
+     */
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+        currentNode.setResidualRevise(residualRevise);
+    }
+
+
+    /**
+     * Selects the heuristic of dynamic variable ordering, which this turns on: smallest domain (as with
+     * dynamicOrdering), dom/deg or dom/wdeg.
+     * @param heuristic the dynamic variable ordering heuristic.
+     */
+    public void setVarHeuristic(VarHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.dynamicOrdering = true;
+        currentNode.setVarHeuristic(heuristic);
+    }
+
+
+    /**
+     * Selects the heuristic of value ordering: smallest value, or one of the support counting orderings.
+     * @param valHeuristic the value ordering heuristic.
+     */
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+        currentNode.setValHeuristic(valHeuristic);
+    }
+
+
+    /**
+     * Selects an AC3 arc queue ordered by domain size instead of a FIFO one.
+     * @param domainOrderedQueue flag indicating whether arcs of the smallest domains are revised first.
+     */
+    public void setDomainOrderedQueue(boolean domainOrderedQueue) {
+        this.domainOrderedQueue = domainOrderedQueue;
+        currentNode.setDomainOrderedQueue(domainOrderedQueue);
+    }
+
+
+    /**
+     * Selects the propagation engine, AC3 by default.
+     * @param propagator the engine restoring arc consistency after each decision.
+     */
+    public void setPropagator(Propagator propagator) {
+        this.propagator = propagator;
+    }
+
+
+    /**
+     * Turns on restarts: each run is cut off after the policy's number of nodes, the nogoods of the branch it was on
+     * are kept, and search starts again from the root. Ties in variable selection are broken at random, from the given
+     * seed, so that runs differ. Values keep their deterministic order. Restarts only apply when looking for a single solution.
+     * @param restartPolicy cutoffs of the runs.
+     * @param seed seed of the random tie-breaking.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy, long seed) {
+        this.restartPolicy = restartPolicy;
+        this.seed = seed;
+    }
+
+
+    @Override
+    public void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+
+    @Override
+    public void setSolutionLimit(long solutionLimit) {
+        this.solutionLimit = solutionLimit;
+    }
+
+
+    @Override
+    public void setSolutionListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+
+    @Override
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+        currentNode.getMetrics().setTiming(detailedMetrics);
+        currentNode.getMetrics().setDepthHistograms(detailedMetrics);
     }
 
 
     /**
      * Method called from Main to initiate the algorithm.
      */
+    @Override
     public void solve() {
+        System.out.println("Initialising variables list and domains...\n");
         System.out.println("Begin solving with MAC solver...\n");
-        if (dynamicOrdering) {
+        if (dynamicOrdering && heuristic != VarHeuristic.DOM) {
+            System.out.println("Using dynamic " + heuristic.getLabel() + " heuristic...\n");
+        }
+        else if (dynamicOrdering) {
             System.out.println("Using dynamic, smallest domain heuristic...\n");
         }
         else {
             System.out.println("Using ascending variable strategy...\n");
         }
+        if (residualRevise) {
+            System.out.println("Using residual supports in revise...\n");
+        }
+        if (valHeuristic != ValHeuristic.MIN) {
+            System.out.println("Using " + valHeuristic.getLabel() + " value ordering...\n");
+        }
+        if (restartPolicy != null && solutionLimit == 1) {
+            System.out.println("Using " + restartPolicy.getLabel() + " restarts...\n");
+        }
+        System.out.println("Using " + propagator.getName() + " propagation...\n");
+        if (domainOrderedQueue) {
+            System.out.println("Using smallest domain first arc queue...\n");
+        }
+        if (solutionLimit != 1) {
+            System.out.println(solutionLimit == 0 ? "Searching for all solutions...\n"
+                    : "Searching for up to " + solutionLimit + " solutions...\n");
+            search();
+            System.out.println("Number of solutions: " + solutionCount);
+        } else if (search()) {
+            System.out.println("Solution found");
+            currentNode.printNodeDetails();
+        } else {
+            System.out.println("No solution found");
+        }
+        System.out.println("Number of nodes: " + currentNode.getNodeCount());
+        System.out.println("Number of arc revisions: " + currentNode.getRevisionCount());
+        printPropagationStats();
+        printRestartStats();
+        System.out.println("Time elapsed: " + Long.toString(getElapsedTime()) + "ms");
+        if (detailedMetrics) {
+            System.out.print("\nSearch metrics:\n" + getMetrics());
+        }
+    }
+
+
+    @Override
+    public boolean search() {
+        SearchEvent event = new SearchEvent();
+        event.begin();
         startTime = System.currentTimeMillis();
-        mac3(currentNode);
-        System.out.println("exit normally");
+        solution = null;
+        solutionCount = 0;
+        nogoods = null;
+        if (propagator.initialise(currentNode)) {
+            if (currentNode.completeAssignment()) {
+                solutionFound(currentNode);
+            } else if (restartPolicy != null && solutionLimit == 1) {
+                restartSearch();
+            } else {
+                mac3(currentNode);
+            }
+        }
+        endTime = System.currentTimeMillis();
+        event.finish(this);
+        if (listener != null) {
+            listener.searchFinished();
+        }
+        return solution != null;
+    }
+
+
+    /**
+     * Searches in runs cut off by the restart policy. Before each new run, the node is taken back to the root and the
+     * nogoods of the branch the last run stopped on are added, and their deletions propagated.
+     */
+    private void restartSearch() {
+        currentNode.setRandom(new Random(seed));
+        nogoods = new NogoodStore(csp);
+        restartCount = 0;
+        int rootLevel = currentNode.getTrail().getLevel();
+        Trail trail = currentNode.getTrail();
+        while (true) {
+            nodeLimit = currentNode.getNodeCount() + restartPolicy.cutoff(restartCount);
+            restarting = false;
+            if (!mac3(currentNode) || !restarting) {
+                break;
+            }
+            restartCount++;
+            ArrayList<int[]> learnt = nogoods.branchNogoods(currentNode, rootLevel);
+            currentNode.backtrackTo(rootLevel);
+            int from = trail.size();
+            boolean consistent = true;
+            for (int[] nogood : learnt) {
+                consistent = consistent && nogoods.add(nogood, currentNode);
+            }
+            int added = trail.size();
+            for (int k = from; consistent && k < added; k++) {
+                consistent = propagator.propagate(currentNode, trail.getVar(k));
+            }
+            if (!consistent || !propagateNogoods(currentNode, from)) {
+                break;
+            }
+        }
+        nodeLimit = Long.MAX_VALUE;
+        currentNode.setRandom(null);
     }
 
 
     /**
      * The main recursive procedure of the mac3 algorithm
      * @param node
+     * @return true if the search is over, because the last solution wanted was found or the search was stopped. The
+     * node is then left as it is, holding that solution.
      */
-    public void mac3(Node node) {
+    public boolean mac3(Node node) {
+        if (stopFlag.get()) {
+            return true;
+        }
+        if (node.getNodeCount() >= nodeLimit) {
+            restarting = true;
+            return true;
+        }
         int var;
         // selecting variable
         if (dynamicOrdering) {
@@ -104,42 +330,173 @@ public class MaintainArcConsistency {
         // select value
         int val = node.selectVal(var);
 
-        // create copy of current node to be used in order to undo pruning if necessary
-        Node prevNode = new Node(csp, currentNode.getVariablesMap(), currentNode.getVarList());
-
-        Node leftNode = new Node(csp, prevNode.getVariablesMap(), prevNode.getVarList());
+        node.pushLevel();
+        node.assign(var, val);
 
-        leftNode.assign(var, val);
-
-        if (leftNode.completeAssignment()) {
-            endTime = System.currentTimeMillis();
-            System.out.println("Solution found");
-            leftNode.printNodeDetails();
-            System.out.println("Number of nodes: " + Node.nodeCount);
-            System.out.println("Number of arc revisions: " + Node.revisionCount);
-            System.out.println("Time elapsed: " + Long.toString(endTime - startTime) + "ms");
-            System.exit(0);
-        } else if (leftNode.ac3(var)) {
-            currentNode = leftNode;
-            mac3(leftNode);
+        if (node.completeAssignment()) {
+            if (solutionFound(node)) {
+                return true;
+            }
+        } else if (propagate(node, var)) {
+            if (mac3(node)) {
+                return true;
+            }
         }
 
-        // undo pruning of ac3 above (also unassigns the value)
-        currentNode = prevNode;
+        // undo pruning of propagation above (also unassigns the value)
+        node.popLevel();
 
-        // since it didn't work out, re-create next node and delete val from its domain
-        Node rightNode = new Node(csp, currentNode.getVariablesMap(), currentNode.getVarList());
-        rightNode.deleteValue(var, val);
+        // since it didn't work out, delete val from the domain of var
+        node.pushLevel();
+        node.deleteValue(var, val);
 
         // if its domain is not empty
-        if (!rightNode.getVariablesMap().get(var).isEmpty()) {
+        if (!node.getDomains().isEmpty(var)) {
             // if it's arc consistent
-            if (rightNode.ac3(var)) {
-                currentNode = rightNode;
-                mac3(rightNode);
+            if (propagate(node, var)) {
+                if (mac3(node)) {
+                    return true;
+                }
             }
-            currentNode = prevNode;
         }
+        node.popLevel();
+        return false;
+    }
+
+
+    /**
+     * Restores arc consistency after a decision on var, together with the nogoods if restarting.
+     * @return false if a domain was wiped out or a nogood violated.
+     */
+    private boolean propagate(Node node, int var) {
+        int from = node.getTrail().getLevelStart();
+        if (!propagator.propagate(node, var)) {
+            return false;
+        }
+        return nogoods == null || propagateNogoods(node, from);
+    }
+
+
+    /**
+     * Alternates between the nogoods and the propagator until neither deletes anything more: the values the nogoods
+     * delete are propagated by the propagator, and the variables this fixes to a single value are handed back to the
+     * nogoods.
+     * @param from trail index of the first deletion not yet seen by the nogoods.
+     * @return false if a domain was wiped out or a nogood violated.
+     */
+    private boolean propagateNogoods(Node node, int from) {
+        Trail trail = node.getTrail();
+        while (true) {
+            int start = trail.size();
+            if (!nogoods.propagate(node, from)) {
+                return false;
+            }
+            int end = trail.size();
+            if (end == start) {
+                return true;
+            }
+            for (int k = start; k < end; k++) {
+                if (!propagator.propagate(node, trail.getVar(k))) {
+                    return false;
+                }
+            }
+            from = end;
+        }
+    }
+
+
+    /**
+     * Method called on every complete assignment. Keeps the first solution and passes each one to the listener.
+     * @param node search state holding the solution.
+     * @return true if the search is over: the solution limit has been reached or the listener asked to stop.
+     */
+    private boolean solutionFound(Node node) {
+        solutionCount++;
+        if (solution == null) {
+            solution = node.getAssignment();
+        }
+        boolean more = listener == null || listener.solutionFound(node.getDomains());
+        return !more || solutionCount == solutionLimit;
+    }
+
+
+    /**
+     * Prints the number of restarts and what the nogoods learnt at them did, if restarting.
+     */
+    private void printRestartStats() {
+        if (nogoods != null) {
+            System.out.println("Restarts: " + restartCount + ", nogoods: " + nogoods.size()
+                    + ", values deleted by nogoods: " + nogoods.getValuesDeleted());
+        }
+    }
+
+
+    @Override
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+
+    @Override
+    public int[] getSolution() {
+        return solution;
+    }
+
+
+    @Override
+    public Node getNode() {
+        return currentNode;
+    }
+
+
+    @Override
+    public long getNodeCount() {
+        return currentNode.getNodeCount();
+    }
+
+
+    @Override
+    public long getRevisionCount() {
+        return currentNode.getRevisionCount();
+    }
+
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return currentNode.getMetrics();
+    }
+
+
+    @Override
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+
+
+    @Override
+    public String getName() {
+        return "MAC (" + (dynamicOrdering ? heuristic.getLabel() : "static") + ", " + propagator.getName()
+                + (residualRevise ? ", AC3rm" : "") + (domainOrderedQueue ? ", domain-ordered queue" : "")
+                + (valHeuristic != ValHeuristic.MIN ? ", " + valHeuristic.getLabel() : "")
+                + (restartPolicy != null ? ", " + restartPolicy.getLabel() + " restarts" : "") + ")";
+    }
+
+
+    public Propagator getPropagator() {
+        return propagator;
+    }
+
+
+    /**
+     * Prints the propagation engine's work counters, in total and per node.
+     */
+    private void printPropagationStats() {
+        double nodes = Math.max(currentNode.getNodeCount(), 1);
+        System.out.println("Propagation calls (" + propagator.getName() + "): " + propagator.getCalls());
+        System.out.println("Support checks: " + propagator.getSupportChecks()
+                + String.format(" (%.1f per node)", propagator.getSupportChecks() / nodes));
+        System.out.println("Values deleted by propagation: " + propagator.getValuesDeleted()
+                + String.format(" (%.1f per node)", propagator.getValuesDeleted() / nodes));
     }
 
 }
@@ -1,44 +1,159 @@
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Random;
 
 @SuppressWarnings("Duplicates")
 /**
- * Class implementing the node data structure
+ * Class implementing the node data structure. A single Node is the mutable state of a whole search: branching enters
+ * a new decision level with pushLevel() and backtracking undoes it with popLevel(), which restores only the values and
+ * assignments recorded on the trail since then.
  */
 public class Node {
 
 
-    public static int nodeCount = 0;
-    public static int revisionCount = 0;
-    public static long revisionTime = 0;
+    // statistics of the search this node belongs to; a search owns its node, so they need no synchronisation
+    private SearchMetrics metrics;
+    // depth of the root of this node's search in the whole search tree, non-zero for a copy of another search
+    private int baseDepth = 0;
     private BinaryCSP csp;
-    // maps the variable to its domain
-    private HashMap<Integer, ArrayList<Integer>> variablesMap;
-    // holds unassigned variables
-    private ArrayList<Integer> varList;
+    // holds the domain of every variable
+    private DomainStore domains;
+    // assigned[var] is true once var has been assigned, for O(1) lookups
+    private boolean[] assigned;
+    // unassigned variables by domain size, kept up to date by deleteValue, assign and popLevel for variable selection;
+    // also how the unassigned variables are gone through, in increasing order, with nextUnassigned
+    private VariableBuckets buckets;
+    // records deletions and assignments so that they can be undone on backtrack
+    private Trail trail;
+    // whether revise uses residual supports (AC3rm) instead of searching D(j) from scratch
+    private boolean residualRevise = false;
+    // residues[arcId][iVal - lb(i)] holds the last support found for iVal on arc (i, j). Not trailed: a residue is
+    // always a support, it only has to be checked for membership of D(j)
+    private int[][] residues;
+    // queue of arcs awaiting revision in ac3
+    private ArcQueue arcQueue;
+    // heuristic of selectVarDynamic
+    private VarHeuristic heuristic = VarHeuristic.DOM;
+    // weights[scopeId] counts the wipeouts caused by the constraint on that scope, plus one. Not trailed: weights
+    // are learnt over the whole search
+    private int[] weights;
+    // heuristic of selectVal
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    // supports of every value on every arc, kept only for the support value orderings
+    private SupportCounts supportCounts;
+    // breaks ties in variable selection if set, e.g. for restarts; lowest index otherwise
+    private Random random;
 
 
     /**
-     * Class constructor
+     * Class constructor. Copies the domains and the unassigned variables, and starts with an empty trail.
      *
      * @param csp          instance of the binary CSP
-     * @param variablesMap initially it will be the same as the parent node's map.
-     * @param varList      initially it will be the same as the parent node's list.
+     * @param domains      initially it will be the same as the parent node's domains.
+     * @param varList      the unassigned variables, in any order; only read, not kept.
      */
-    public Node(BinaryCSP csp, HashMap<Integer, ArrayList<Integer>> variablesMap, ArrayList<Integer> varList) {
+    public Node(BinaryCSP csp, DomainStore domains, ArrayList<Integer> varList) {
         this.csp = csp;
+        this.domains = new DomainStore(domains);
+        this.assigned = new boolean[csp.getNoVariables()];
+        Arrays.fill(assigned, true);
+        for (int var : varList) {
+            assigned[var] = false;
+        }
+        this.buckets = newBuckets();
+        this.trail = new Trail();
+        this.residues = new int[csp.getNoArcs()][];
+        this.arcQueue = new FifoArcQueue(csp.getNoArcs());
+        this.metrics = new SearchMetrics();
+        this.weights = new int[csp.getNoArcs() / 2];
+        Arrays.fill(weights, 1);
+
+        metrics.node(0);
+
+    }
+
+
+    /**
+     * Copy constructor. Takes a snapshot of the current domains and unassigned variables of another search, e.g. to
+     * hand a subtree over to another thread. The copy starts with an empty trail, fresh statistics and no node counted,
+     * and revises arcs, orders variables and collects metrics the same way as the original, starting from its
+     * constraint weights.
+     *
+     * @param other node whose current state is copied
+     */
+    public Node(Node other) {
+        this.csp = other.csp;
+        this.domains = new DomainStore(other.domains);
+        this.assigned = other.assigned.clone();
+        this.buckets = newBuckets();
+        this.trail = new Trail();
+        this.residues = new int[csp.getNoArcs()][];
+        this.residualRevise = other.residualRevise;
+        this.heuristic = other.heuristic;
+        this.weights = other.weights.clone();
+        this.valHeuristic = other.valHeuristic;
+        this.supportCounts = other.supportCounts == null ? null : new SupportCounts(other.supportCounts);
+        this.metrics = new SearchMetrics(other.metrics);
+        this.baseDepth = other.getDepth();
+        setDomainOrderedQueue(other.arcQueue instanceof DomainSizeArcQueue);
+    }
 
-        HashMap<Integer, ArrayList<Integer>> varsMap = new HashMap<>();
-        for (int key : variablesMap.keySet()) {
-            ArrayList<Integer> vals = (ArrayList<Integer>) variablesMap.get(key).clone();
-            varsMap.put(key, vals);
+
+    /**
+     * @return buckets holding the unassigned variables with their current domain sizes.
+     */
+    private VariableBuckets newBuckets() {
+        VariableBuckets buckets = new VariableBuckets(csp);
+        for (int var = 0; var < assigned.length; var++) {
+            if (!assigned[var]) {
+                buckets.add(var, domains.size(var));
+            }
         }
-        this.variablesMap = varsMap;
-        this.varList = (ArrayList<Integer>) varList.clone();
+        return buckets;
+    }
 
-        nodeCount++;
 
+    /**
+     * Enters a new node of the search tree, one decision level below the current one.
+     */
+    public void pushLevel() {
+        trail.checkpoint();
+        metrics.node(getDepth());
+    }
+
+
+    /**
+     * Backtracks out of the current decision level, restoring every value deleted and every variable assigned since
+     * the matching pushLevel().
+     */
+    public void popLevel() {
+        metrics.backtrack();
+        int end = trail.size();
+        int start = trail.backtrack();
+        for (int k = end - 1; k >= start; k--) {
+            int var = trail.getVar(k);
+            int val = trail.getVal(k);
+            if (val == Trail.ASSIGNED) {
+                assigned[var] = false;
+                buckets.add(var, domains.size(var));
+            } else {
+                domains.restore(var, val);
+                buckets.resize(var, domains.size(var));
+                if (supportCounts != null) {
+                    supportCounts.update(var, val, 1);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Backtracks out of every decision level below the given one, e.g. to restart from the root.
+     */
+    public void backtrackTo(int level) {
+        while (trail.getLevel() > level) {
+            popLevel();
+        }
     }
 
 
@@ -48,7 +163,7 @@ public class Node {
      * @return
      */
     public boolean completeAssignment() {
-        if (varList.isEmpty()) {
+        if (buckets.isEmpty()) {
             return true;
         }
         return false;
@@ -56,52 +171,123 @@ public class Node {
 
 
     /**
-     * Static ordering
+     * Static ordering: the unassigned variable with the lowest index.
      *
-     * @return variable selected
+     * @return variable selected, or -1 if every variable is assigned
      */
     public int selectVar() {
-        if (!varList.isEmpty()) {
-            Collections.sort(varList);
-            return varList.get(0);
+        return buckets.first();
+    }
+
+
+    /**
+     * Dynamic variable ordering, by the heuristic set with setVarHeuristic: smallest domain first by default, ties
+     * going to the lowest index, or to a random one if setRandom was called.
+     *
+     * @return variable selected, or -1 if every variable is assigned
+     */
+    public int selectVarDynamic() {
+        if (heuristic != VarHeuristic.DOM) {
+            return selectVarByDegree(heuristic == VarHeuristic.DOM_WDEG);
         }
-        return -1;
+        return random == null ? buckets.smallest() : buckets.smallest(random);
     }
 
 
     /**
-     * Dynamic smallest-domain first variable ordering. Iterates the unassigned variables and returns the one with the
-     * smallest domain
+     * dom/deg or dom/wdeg variable ordering. The degree of a variable counts, or sums the weights of, its constraints
+     * with unassigned variables. Ratios are compared by cross-multiplying; a variable of degree 0 comes after all
+     * others, and ties go to the lowest index, or to a random one if setRandom was called.
      *
+     * @param weighted whether constraints count with their weights.
      * @return variable selected
      */
-    public int selectVarDynamic() {
-        if (!varList.isEmpty()) {
-            Collections.sort(varList);
-            int smallestDomainVar = varList.get(0);
-            for (int key : varList) {
-                ArrayList<Integer> domain = variablesMap.get(key);
-                int domainSize = domain.size();
-                if ((domainSize < variablesMap.get(smallestDomainVar).size()) && (domain.size() > 0)) {
-                    smallestDomainVar = key;
+    private int selectVarByDegree(boolean weighted) {
+        int best = -1;
+        long bestSize = 0;
+        long bestDegree = 0;
+        int ties = 0;
+        for (int var = buckets.next(0); var != -1; var = buckets.next(var + 1)) {
+            long size = domains.size(var);
+            long degree = 0;
+            for (int neighbour : csp.getNeighbours(var)) {
+                if (!assigned[neighbour]) {
+                    degree += weighted ? weights[csp.getScopeId(var, neighbour)] : 1;
                 }
             }
-            return smallestDomainVar;
+            boolean better;
+            boolean tie = false;
+            if (best == -1) {
+                better = true;
+            } else if (degree == 0 || bestDegree == 0) {
+                // once a variable with constraints is best, only another one with constraints can replace it
+                better = bestDegree == 0 && (degree != 0 || size < bestSize);
+                tie = bestDegree == 0 && degree == 0 && size == bestSize;
+            } else {
+                // size / degree < bestSize / bestDegree
+                better = size * bestDegree < bestSize * degree;
+                tie = size * bestDegree == bestSize * degree;
+            }
+            if (better) {
+                ties = 1;
+            } else if (tie && random != null) {
+                // reservoir sampling: each of the tied variables is kept with equal probability
+                better = random.nextInt(++ties) == 0;
+            }
+            if (better) {
+                best = var;
+                bestSize = size;
+                bestDegree = degree;
+            }
         }
-        return -1;
+        return best;
+    }
+
+
+    /**
+     * Counts a wipeout caused by the constraint on {iVar, jVar}, for dom/wdeg.
+     */
+    public void increaseWeight(int iVar, int jVar) {
+        weights[csp.getScopeId(iVar, jVar)]++;
     }
 
 
     /**
-     * Select a value from a variable's domain
+     * Select a value from a variable's domain, by the heuristic set with setValHeuristic: the smallest value by default.
+     * Ties between values of the support orderings go to the smallest one, whether or not setRandom was called: with
+     * restarts, random value ties led every run down different values and lost the guidance of the ordering.
      *
      * @param var from whose domain a value will be selected
      * @return the value that will be assigned to var
      */
     public int selectVal(int var) {
-        ArrayList<Integer> domain = variablesMap.get(var);
-        Collections.sort(domain);
-        return variablesMap.get(var).get(0);
+        if (valHeuristic == ValHeuristic.MIN) {
+            return domains.minValue(var);
+        }
+        int best = DomainStore.NONE;
+        long bestMin = -1;
+        long bestTotal = -1;
+        for (int val = domains.minValue(var); val != DomainStore.NONE; val = domains.nextValue(var, val + 1)) {
+            long min = Long.MAX_VALUE;
+            long total = 0;
+            for (int neighbour : csp.getNeighbours(var)) {
+                if (!assigned[neighbour]) {
+                    int count = supportCounts.get(var, val, neighbour);
+                    min = Math.min(min, count);
+                    total += count;
+                }
+            }
+            // max-support only looks at the total; values are visited in increasing order, so ties keep the smallest
+            boolean better = valHeuristic == ValHeuristic.LCV
+                    ? min > bestMin || (min == bestMin && total > bestTotal)
+                    : total > bestTotal;
+            if (better) {
+                best = val;
+                bestMin = min;
+                bestTotal = total;
+            }
+        }
+        return best;
     }
 
 
@@ -112,10 +298,14 @@ public class Node {
      * @param val value assigned to the variable.
      */
     public void assign(int var, int val) {
-        ArrayList<Integer> assignedDomain = new ArrayList<>();
-        assignedDomain.add(val);
-        varList.remove(varList.indexOf(var));
-        variablesMap.put(var, assignedDomain);
+        assigned[var] = true;
+        buckets.remove(var);
+        trail.push(var, Trail.ASSIGNED);
+        for (int other = domains.minValue(var); other != DomainStore.NONE; other = domains.nextValue(var, other + 1)) {
+            if (other != val) {
+                deleteValue(var, other);
+            }
+        }
     }
 
 
@@ -126,9 +316,13 @@ public class Node {
      * @param val value to be deleted from the domain of var.
      */
     public void deleteValue(int var, int val) {
-        ArrayList<Integer> domain = variablesMap.get(var);
-        domain.remove(domain.indexOf(val));
-        variablesMap.put(var, domain);
+        if (domains.remove(var, val)) {
+            trail.push(var, val);
+            buckets.resize(var, domains.size(var));
+            if (supportCounts != null) {
+                supportCounts.update(var, val, -1);
+            }
+        }
     }
 
 
@@ -139,17 +333,22 @@ public class Node {
      * @return
      */
     public boolean reviseFutureArcs(int var) {
-
-        for (int futureVar : varList) {
+        PropagationEvent event = new PropagationEvent();
+        event.begin();
+        long pruned = metrics.getValuesPruned();
+        boolean consistent = true;
+        for (int futureVar = buckets.next(0); futureVar != -1; futureVar = buckets.next(futureVar + 1)) {
             if (futureVar != var) {
                 try {
                     revise(futureVar, var);
                 } catch (ReviseException e) {
-                    return false;
+                    consistent = false;
+                    break;
                 }
             }
         }
-        return true;
+        event.finish(var, getDepth(), metrics.getValuesPruned() - pruned, consistent);
+        return consistent;
     }
 
 
@@ -162,47 +361,74 @@ public class Node {
      * @return whether the revision has caused any changes in the domain of iVar
      */
     public boolean revise(int iVar, int jVar) throws ReviseException {
-        long start = System.currentTimeMillis();
-        revisionCount++;
-        boolean changed = false;
+        long start = metrics.startRevision();
 
-        ArrayList<Integer> iDomain = variablesMap.get(iVar);
-        ArrayList<Integer> jDomain = variablesMap.get(jVar);
-
-        ArrayList<Integer> unsupportedValues = new ArrayList<>();
+        BinaryConstraint c = csp.getConstraint(iVar, jVar);
+        if (c == null) {
+            metrics.endRevision(start, 0, 0);
+            return false;
+        }
 
-        for (int i : iDomain) {
-            // holds whether domain value is supported by some domain value of jVar
-            boolean supported = false;
-            for (int j : jDomain) {
-                if (satisfies(iVar, i, jVar, j)) {
-                    supported = true;
-                }
-            }
-            if (!supported) {
-                unsupportedValues.add(i);
-                changed = true;
-                if (unsupportedValues.size() == iDomain.size()) {
-                    break;
+        int size = domains.size(iVar);
+        if (residualRevise) {
+            reviseResidual(iVar, jVar, c);
+        } else {
+            long[] words = domains.getWords();
+            int jOffset = domains.getOffset(jVar);
+            for (int i = domains.minValue(iVar); i != DomainStore.NONE; i = domains.nextValue(iVar, i + 1)) {
+                // whether domain value is supported by some domain value of jVar: a word-wise AND against D(j)
+                if (!c.hasSupport(iVar, i, words, jOffset)) {
+                    deleteValue(iVar, i);
                 }
             }
         }
-        for (int unsupportedValue : unsupportedValues) {
-            deleteValue(iVar, unsupportedValue);
-        }
+        // every value in D(i) had its support looked for
+        int pruned = size - domains.size(iVar);
+        metrics.endRevision(start, pruned, size);
 
-        if (iDomain.isEmpty()) {
-            long end = System.currentTimeMillis();
-            revisionTime += (end - start);
+        if (domains.isEmpty(iVar)) {
+            weights[csp.getScopeId(iVar, jVar)]++;
+            metrics.wipeout(getDepth());
             throw new ReviseException("Domain is detected. Exit AC3 early.");
         }
-        long end = System.currentTimeMillis();
-        revisionTime += (end - start);
-        return changed;
+        return pruned > 0;
 
     }
 
 
+    /**
+     * AC3rm revision of arc (iVar, jVar). Each value of iVar first checks its residue, the support last found for it on
+     * this arc, and only searches D(j) again, starting from the residue's word, if the residue has been deleted.
+     */
+    private void reviseResidual(int iVar, int jVar, BinaryConstraint c) {
+        int iLB = csp.getLB(iVar);
+        int jLB = csp.getLB(jVar);
+        int arcId = csp.getArcId(iVar, jVar);
+        int[] arcResidues = residues[arcId];
+        if (arcResidues == null) {
+            arcResidues = new int[csp.getUB(iVar) - iLB + 1];
+            Arrays.fill(arcResidues, DomainStore.NONE);
+            residues[arcId] = arcResidues;
+        }
+
+        long[] words = domains.getWords();
+        int jOffset = domains.getOffset(jVar);
+        for (int i = domains.minValue(iVar); i != DomainStore.NONE; i = domains.nextValue(iVar, i + 1)) {
+            int residue = arcResidues[i - iLB];
+            if (residue != DomainStore.NONE && domains.contains(jVar, residue)) {
+                continue;
+            }
+            int fromWord = residue == DomainStore.NONE ? 0 : (residue - jLB) >> 6;
+            int support = c.findSupport(iVar, i, words, jOffset, fromWord);
+            if (support == DomainStore.NONE) {
+                deleteValue(iVar, i);
+            } else {
+                arcResidues[i - iLB] = support;
+            }
+        }
+    }
+
+
     /**
      * Method which checks revises the arcs and checks for global consistency. If a domain empties, revise will throw a
      * ReviseException so that ac3 returns early.
@@ -210,71 +436,41 @@ public class Node {
      * @return true if assignment globally consistent.
      */
     public boolean ac3(int var) {
-        ArrayList<ArcPair> arcQueue = initialiseArcQueue(var);
+        PropagationEvent event = new PropagationEvent();
+        event.begin();
+        long pruned = metrics.getValuesPruned();
+        boolean consistent = true;
+        arcQueue.clear();
+        enqueueArcsTo(var);
         while (!arcQueue.isEmpty()) {
-            ArcPair arcPair = arcQueue.remove(0);
+            int arcId = arcQueue.poll();
+            int iVar = csp.getArcFirst(arcId);
             try {
-                if (revise(arcPair.getFirstVar(), arcPair.getSecondVar())) {
-                    ArrayList<ArcPair> subsequentArcs = getSubsequentArcs(arcPair.getFirstVar());
-                    for (ArcPair subsequentArc : subsequentArcs) {
-                        if (!arcQueue.contains(subsequentArc)) {
-                            arcQueue.add(subsequentArc);
-                        }
-                    }
+                if (revise(iVar, csp.getArcSecond(arcId))) {
+                    enqueueArcsTo(iVar);
                 }
             } catch (ReviseException e) {
-                return false;
+                consistent = false;
+                break;
             }
         }
-        return true;
-    }
-
-    /**
-     * Method which initialises the arc queue employed by AC3.
-     *
-     * @param var variable being examined.
-     * @return a list of ArcPair, the initial queue for AC3.
-     */
-    public ArrayList<ArcPair> initialiseArcQueue(int var) {
-
-        ArrayList<ArcPair> arcQueue = new ArrayList<>();
-        for (BinaryConstraint c : csp.getConstraints()) {
-            if (c.getFirstVar() == var) {
-                if (varList.contains(c.getSecondVar())) {
-                    arcQueue.add(new ArcPair(c.getSecondVar(), c.getFirstVar()));
-                }
-            } else if (c.getSecondVar() == var) {
-                if (varList.contains(c.getFirstVar())) {
-                    arcQueue.add(new ArcPair(c.getFirstVar(), c.getSecondVar()));
-                }
-            }
-        }
-        return arcQueue;
+        event.finish(var, getDepth(), metrics.getValuesPruned() - pruned, consistent);
+        return consistent;
     }
 
 
     /**
-     * Method which adds the appropriate arcs to AC3's arc queue, once an arc has been revised.
+     * Method which adds the arcs (x, var) of every unassigned neighbour x of var to AC3's arc queue. Used both to
+     * initialise the queue and once an arc (var, y) has been revised. Arcs already queued are not added twice.
      *
-     * @param var variable being examined
-     * @return
+     * @param var variable being examined.
      */
-    public ArrayList<ArcPair> getSubsequentArcs(int var) {
-        ArrayList<ArcPair> arcPairs = new ArrayList<>();
-
-        for (BinaryConstraint c : csp.getConstraints()) {
-            if (c.getFirstVar() == var) {
-                if (varList.contains(c.getSecondVar())) {
-                    arcPairs.add(new ArcPair(c.getSecondVar(), c.getFirstVar()));
-                }
-            } else if (c.getSecondVar() == var) {
-                if (varList.contains(c.getFirstVar())) {
-                    arcPairs.add(new ArcPair(c.getFirstVar(), c.getSecondVar()));
-                }
+    private void enqueueArcsTo(int var) {
+        for (int neighbour : csp.getNeighbours(var)) {
+            if (!assigned[neighbour]) {
+                arcQueue.add(csp.getArcId(neighbour, var));
             }
         }
-
-        return arcPairs;
     }
 
 
@@ -288,57 +484,38 @@ public class Node {
      * @return
      */
     public boolean satisfies(int iVar, int iVal, int jVar, int jVal) {
-        boolean constraintExists = false;
-        for (BinaryConstraint c : csp.getConstraints()) {
-            if (c.varsMatch(iVar, jVar)) {
-                constraintExists = true;
-                for (BinaryTuple t : c.getTuples()) {
-                    // since c(2,1) and c(1,2) are both represented c(1,2), must check which one is greater
-                    // left sides of tuple is possible values and right sides is possible j values
-                    if (iVar < jVar) {
-                        // if the tuple matches the values passed as parameters
-                        if (t.getFirstVal() == iVal && t.getSecondVal() == jVal) {
-                            return true;
-                        }
-                    } else {
-                        if (t.getSecondVal() == iVal && t.getFirstVal() == jVal) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        if (!constraintExists) {
+        BinaryConstraint c = csp.getConstraint(iVar, jVar);
+        if (c == null) {
             return true;
-        } else {
-            return false;
         }
+        return c.allows(iVar, iVal, jVal);
     }
 
 
     /**
-     * Utility method which prints the details of the node
+     * Utility method which prints the details of the node. The text is built first and printed in one call.
      */
     public void printNodeDetails() {
-        System.out.println("-------------------------");
-        System.out.println("Node details");
-        printList("Unassigned vars", varList);
-        printMap();
+        StringBuilder details = new StringBuilder();
+        details.append("-------------------------\n");
+        details.append("Node details\n");
+        printList(details, "Unassigned vars");
+        printMap(details);
+        System.out.print(details);
     }
 
 
     /**
      * Method which prints the variables of the  CSP and their domain set.
      */
-    private void printMap() {
-        System.out.println("Node variables map: ");
-        for (int key : variablesMap.keySet()) {
-            ArrayList<Integer> domain = variablesMap.get(key);
-            System.out.print("var: " + key + " with domain: ");
-            for (int i = 0; i < domain.size(); i++) {
-                System.out.print(" " + domain.get(i) + " ");
+    private void printMap(StringBuilder details) {
+        details.append("Node variables map: \n");
+        for (int var = 0; var < domains.getNoVariables(); var++) {
+            details.append("var: ").append(var).append(" with domain: ");
+            for (int val = domains.minValue(var); val != DomainStore.NONE; val = domains.nextValue(var, val + 1)) {
+                details.append(' ').append(val).append(' ');
             }
-            System.out.println('\n');
+            details.append("\n\n");
         }
     }
 
@@ -346,22 +523,119 @@ public class Node {
     /**
      * Method which prints the unassigned variables.
      */
-    private void printList(String listName, ArrayList<Integer> varList) {
-        System.out.println("Details for: " + listName);
-        System.out.println("size of list : " + varList.size());
-        for (int i = 0; i < varList.size(); i++) {
-            System.out.print(" " + varList.get(i) + " ");
+    private void printList(StringBuilder details, String listName) {
+        details.append("Details for: ").append(listName).append('\n');
+        details.append("size of list : ").append(buckets.size()).append('\n');
+        for (int var = buckets.next(0); var != -1; var = buckets.next(var + 1)) {
+            details.append(' ').append(var).append(' ');
         }
-        System.out.print("\n\n");
+        details.append("\n\n");
     }
 
 
-    public HashMap<Integer, ArrayList<Integer>> getVariablesMap() {
-        return variablesMap;
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+    }
+
+
+    /**
+     * Selects the heuristic of selectVarDynamic.
+     */
+    public void setVarHeuristic(VarHeuristic heuristic) {
+        this.heuristic = heuristic;
     }
 
-    public ArrayList<Integer> getVarList() {
-        return varList;
+
+    /**
+     * Selects the heuristic of selectVal. The support orderings count supports from the current domains, so this is
+     * set before search starts.
+     */
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+        supportCounts = valHeuristic == ValHeuristic.MIN ? null : new SupportCounts(csp, domains);
+    }
+
+
+    /**
+     * Breaks ties in variable selection at random rather than by lowest index. Value selection stays deterministic.
+     *
+     * @param random source of the choices, or null for lowest index
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+
+    /**
+     * Selects the order in which ac3 revises queued arcs: smallest domain first if set, first in first out otherwise.
+     */
+    public void setDomainOrderedQueue(boolean domainOrderedQueue) {
+        if (domainOrderedQueue) {
+            arcQueue = new DomainSizeArcQueue(csp, domains);
+        } else {
+            arcQueue = new FifoArcQueue(csp.getNoArcs());
+        }
+    }
+
+
+    /**
+     * Extracts the values of an assignment, e.g. once completeAssignment() holds.
+     *
+     * @return the smallest value in the domain of each variable
+     */
+    public int[] getAssignment() {
+        int[] assignment = new int[domains.getNoVariables()];
+        for (int var = 0; var < assignment.length; var++) {
+            assignment[var] = domains.minValue(var);
+        }
+        return assignment;
+    }
+
+
+    /**
+     * @return the depth of the current node in the search tree, the root being at 0.
+     */
+    public int getDepth() {
+        return baseDepth + trail.getLevel();
+    }
+
+
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    public long getNodeCount() {
+        return metrics.getNodes();
+    }
+
+
+    public long getRevisionCount() {
+        return metrics.getRevisions();
+    }
+
+
+    public long getSupportChecks() {
+        return metrics.getSupportChecks();
+    }
+
+
+    public Trail getTrail() {
+        return trail;
+    }
+
+
+    public DomainStore getDomains() {
+        return domains;
+    }
+
+    /**
+     * Goes through the unassigned variables in increasing order.
+     *
+     * @return the lowest unassigned variable that is at least from, or -1 if there is none.
+     */
+    public int nextUnassigned(int from) {
+        return buckets.next(from);
     }
 
 
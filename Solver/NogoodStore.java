@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Nogoods learnt from the branches cut off by restarts, kept for the rest of the search. When a restart abandons a
+ * branch, every refuted decision x != a on it proves that x = a has no solution under the assignments made above it,
+ * so those assignments together with x = a form a nogood: a reduced nld-nogood, in the terms of Lecoutre et al.
+ * (2007). They stop the next runs from searching the same refuted subtrees again.
+ *
+ * A nogood is a conjunction of literals x = a that must not all hold, where x = a holds once D(x) = {a}. Each nogood
+ * watches two literals that do not hold, in positions 0 and 1. Only when a watched literal comes to hold is the nogood
+ * looked at again: it then watches another literal, or, if every other literal holds, a from the last one is deleted
+ * from its domain. Watches need not be restored on backtrack, since literals only stop holding then. The literals that
+ * come to hold are found on the node's trail, as with AC6.
+ */
+public class NogoodStore {
+
+    // nogoods[id] holds the variables and values of the literals, interleaved: x0, a0, x1, a1, ...
+    private ArrayList<int[]> nogoods = new ArrayList<>();
+    // watchLists[x] holds the ids of the nogoods watching a literal on x, the first watchSizes[x] of them
+    private int[][] watchLists;
+    private int[] watchSizes;
+
+    private long valuesDeleted = 0;
+
+
+    /**
+     * @param csp instance of the binary CSP
+     */
+    public NogoodStore(BinaryCSP csp) {
+        watchLists = new int[csp.getNoVariables()][4];
+        watchSizes = new int[csp.getNoVariables()];
+    }
+
+
+    /**
+     * Reads the reduced nld-nogoods off the node's current branch, one for each refuted decision x != a below
+     * rootLevel: the assignments above it, and x = a. Decisions are the first trail entry of each level.
+     *
+     * @param node      search state at the point where the branch was cut off
+     * @param rootLevel decision level of the root of the search
+     * @return the nogoods, in the layout of add()
+     */
+    public ArrayList<int[]> branchNogoods(Node node, int rootLevel) {
+        Trail trail = node.getTrail();
+        ArrayList<int[]> branch = new ArrayList<>();
+        int[] positive = new int[0];
+        for (int level = rootLevel + 1; level <= trail.getLevel(); level++) {
+            int entry = trail.getCheckpoint(level);
+            int var = trail.getVar(entry);
+            int val = trail.getVal(entry);
+            if (val == Trail.ASSIGNED) {
+                positive = Arrays.copyOf(positive, positive.length + 2);
+                positive[positive.length - 2] = var;
+                positive[positive.length - 1] = node.getDomains().minValue(var);
+            } else {
+                int[] nogood = Arrays.copyOf(positive, positive.length + 2);
+                nogood[nogood.length - 2] = var;
+                nogood[nogood.length - 1] = val;
+                branch.add(nogood);
+            }
+        }
+        return branch;
+    }
+
+
+    /**
+     * Adds a nogood, and deletes the value it excludes right away if all its other literals already hold.
+     *
+     * @param literals variables and values, interleaved
+     * @param node     current search state
+     * @return false if every literal already holds, or the deletion wiped out a domain.
+     */
+    public boolean add(int[] literals, Node node) {
+        DomainStore domains = node.getDomains();
+        int[] nogood = literals.clone();
+        // bring up to two literals that do not hold to the front
+        int open = 0;
+        for (int p = 0; p < nogood.length / 2 && open < 2; p++) {
+            if (!holds(domains, nogood[2 * p], nogood[2 * p + 1])) {
+                swap(nogood, p, open++);
+            }
+        }
+        if (open == 0) {
+            return false;
+        }
+        if (open == 1 && domains.contains(nogood[0], nogood[1])) {
+            node.deleteValue(nogood[0], nogood[1]);
+            valuesDeleted++;
+            if (domains.isEmpty(nogood[0])) {
+                return false;
+            }
+        }
+        if (nogood.length == 2) {
+            // a single literal never needs looking at again once its value is gone
+            return true;
+        }
+        int id = nogoods.size();
+        nogoods.add(nogood);
+        watch(nogood[0], id);
+        watch(nogood[2], id);
+        return true;
+    }
+
+
+    /**
+     * Works through the trail from index start, which grows as the nogoods delete values, and handles the nogoods
+     * watching every variable whose domain has become a single value.
+     *
+     * @return false if a nogood is violated or a domain was wiped out.
+     */
+    public boolean propagate(Node node, int start) {
+        Trail trail = node.getTrail();
+        DomainStore domains = node.getDomains();
+        for (int k = start; k < trail.size(); k++) {
+            int var = trail.getVar(k);
+            if (trail.getVal(k) == Trail.ASSIGNED || domains.size(var) != 1) {
+                continue;
+            }
+            int i = 0;
+            while (i < watchSizes[var]) {
+                int id = watchLists[var][i];
+                int[] nogood = nogoods.get(id);
+                // keep the literal on var in position 1
+                if (nogood[0] == var) {
+                    swap(nogood, 0, 1);
+                }
+                if (!holds(domains, var, nogood[3])) {
+                    i++;
+                    continue;
+                }
+                int replacement = -1;
+                for (int p = 2; p < nogood.length / 2; p++) {
+                    if (!holds(domains, nogood[2 * p], nogood[2 * p + 1])) {
+                        replacement = p;
+                        break;
+                    }
+                }
+                if (replacement != -1) {
+                    swap(nogood, 1, replacement);
+                    watch(nogood[2], id);
+                    // the last watch takes this one's place, so i stays
+                    watchLists[var][i] = watchLists[var][--watchSizes[var]];
+                    continue;
+                }
+                // every literal but the one in position 0 holds
+                if (holds(domains, nogood[0], nogood[1])) {
+                    return false;
+                }
+                if (domains.contains(nogood[0], nogood[1])) {
+                    node.deleteValue(nogood[0], nogood[1]);
+                    valuesDeleted++;
+                    if (domains.isEmpty(nogood[0])) {
+                        return false;
+                    }
+                }
+                i++;
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean holds(DomainStore domains, int var, int val) {
+        return domains.size(var) == 1 && domains.contains(var, val);
+    }
+
+
+    /**
+     * Swaps the literals in positions p and q.
+     */
+    private static void swap(int[] nogood, int p, int q) {
+        int var = nogood[2 * p];
+        int val = nogood[2 * p + 1];
+        nogood[2 * p] = nogood[2 * q];
+        nogood[2 * p + 1] = nogood[2 * q + 1];
+        nogood[2 * q] = var;
+        nogood[2 * q + 1] = val;
+    }
+
+
+    private void watch(int var, int id) {
+        if (watchSizes[var] == watchLists[var].length) {
+            watchLists[var] = Arrays.copyOf(watchLists[var], watchSizes[var] * 2);
+        }
+        watchLists[var][watchSizes[var]++] = id;
+    }
+
+
+    /**
+     * @return number of nogoods kept, not counting those of a single literal.
+     */
+    public int size() {
+        return nogoods.size();
+    }
+
+
+    /**
+     * @return number of values deleted because of a nogood.
+     */
+    public long getValuesDeleted() {
+        return valuesDeleted;
+    }
+}
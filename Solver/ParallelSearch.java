@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+@SuppressWarnings("Duplicates")
+/**
+ * Class which explores the binary branching tree of forward checking or MAC on several threads. Near the root, the
+ * right branch (var != val) of every decision is forked as a ForkJoin task with a snapshot of the search state, while
+ * the current thread carries on down the left branch (var = val). Idle threads steal the forked subtrees, the largest
+ * ones first, and every task searches with its own Node and propagator, so threads share nothing but the read-only
+ * BinaryCSP and the stop flag. Below the split depth a task searches sequentially.
+ *
+ * By default the search stops as soon as any task finds a solution. With a solution limit other than 1 it goes on
+ * until that many have been found, or explores the whole tree for a limit of 0, passing each solution to the listener.
+ */
+public class ParallelSearch implements Solver {
+
+    // decisions below which right branches are no longer forked
+    public static final int DEFAULT_SPLIT_DEPTH = 12;
+
+    private BinaryCSP csp;
+    private int threads;
+    private boolean mac;
+    private boolean dynamicOrdering;
+    // heuristic of dynamic ordering
+    private VarHeuristic heuristic = VarHeuristic.DOM;
+    // heuristic of value ordering
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    private boolean residualRevise;
+    private boolean domainOrderedQueue;
+    // propagation engine of MAC tasks: ac3 or ac6
+    private String propagatorName = "ac3";
+    private int splitDepth = DEFAULT_SPLIT_DEPTH;
+    // number of solutions to find before stopping, 0 for all of them
+    private long solutionLimit = 1;
+    // receives every solution found, called by one task at a time
+    private SolutionListener listener;
+    // whether revisions are timed and depths histogrammed, and the metrics printed
+    private boolean detailedMetrics;
+    // root of the search tree
+    private Node rootNode;
+    private AtomicBoolean stopFlag = new AtomicBoolean(false);
+    private long startTime;
+    private long endTime;
+
+    // filled in by the tasks as they run
+    private volatile Node solutionNode;
+    // metrics of the tasks that have finished, added up as each one does so that its Node can be dropped
+    private SearchMetrics taskMetrics;
+    private long solutionCount;
+    private long taskCount;
+    private long stealCount;
+
+
+    /**
+     * Class constructor
+     * @param csp the instance representing the binary constraint problem.
+     * @param mac flag indicating whether MAC is maintained, forward checking otherwise.
+     * @param dynamicOrdering flag indicating whether dynamic ordering will be used.
+     * @param threads number of worker threads.
+     */
+    public ParallelSearch(BinaryCSP csp, boolean mac, boolean dynamicOrdering, int threads) {
+        this.csp = csp;
+        this.mac = mac;
+        this.dynamicOrdering = dynamicOrdering;
+        this.threads = threads;
+        ArrayList<Integer> varList = new ArrayList<>();
+        for (int i = 0; i < csp.getNoVariables(); i++) {
+            varList.add(i);
+        }
+        this.rootNode = new Node(csp, new DomainStore(csp), varList);
+    }
+
+
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+        rootNode.setResidualRevise(residualRevise);
+    }
+
+
+    /**
+     * Selects the heuristic of dynamic variable ordering, which this turns on: smallest domain (as with
+     * dynamicOrdering), dom/deg or dom/wdeg. Every task starts from the constraint weights of the task it was forked
+     * from.
+     * @param heuristic the dynamic variable ordering heuristic.
+     */
+    public void setVarHeuristic(VarHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.dynamicOrdering = true;
+        rootNode.setVarHeuristic(heuristic);
+    }
+
+
+    /**
+     * Selects the heuristic of value ordering: smallest value, or one of the support counting orderings.
+     * @param valHeuristic the value ordering heuristic.
+     */
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+        rootNode.setValHeuristic(valHeuristic);
+    }
+
+
+    public void setDomainOrderedQueue(boolean domainOrderedQueue) {
+        this.domainOrderedQueue = domainOrderedQueue;
+        rootNode.setDomainOrderedQueue(domainOrderedQueue);
+    }
+
+
+    /**
+     * Selects the propagation engine of the MAC tasks, each of which creates its own.
+     * @param propagatorName ac3 or ac6.
+     */
+    public void setPropagatorName(String propagatorName) {
+        this.propagatorName = propagatorName;
+    }
+
+
+    /**
+     * @param splitDepth number of decisions from the root within which right branches are forked as new tasks.
+     */
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = splitDepth;
+    }
+
+
+    @Override
+    public void setSolutionLimit(long solutionLimit) {
+        this.solutionLimit = solutionLimit;
+    }
+
+
+    @Override
+    public void setSolutionListener(SolutionListener listener) {
+        this.listener = listener;
+    }
+
+
+    @Override
+    public void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+
+    /**
+     * Applies to every task, as each one copies the settings of the root node's metrics.
+     */
+    @Override
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+        rootNode.getMetrics().setTiming(detailedMetrics);
+        rootNode.getMetrics().setDepthHistograms(detailedMetrics);
+    }
+
+
+    /**
+     * Method called from Main to initiate the search.
+     */
+    @Override
+    public void solve() {
+        System.out.println("Begin solving with parallel " + getName() + " on " + threads + " threads...\n");
+        if (solutionLimit != 1) {
+            System.out.println(solutionLimit == 0 ? "Searching for all solutions...\n"
+                    : "Searching for up to " + solutionLimit + " solutions...\n");
+            search();
+            System.out.println("Number of solutions: " + solutionCount);
+        } else if (search()) {
+            System.out.println("Solution found");
+            solutionNode.printNodeDetails();
+        } else {
+            System.out.println("No solution found");
+        }
+        System.out.println("Number of nodes: " + getNodeCount());
+        System.out.println("Number of arc revisions: " + getRevisionCount());
+        System.out.println("Tasks: " + taskCount + ", stolen: " + stealCount);
+        System.out.println("Time elapsed: " + Long.toString(getElapsedTime()) + "ms");
+        if (detailedMetrics) {
+            System.out.print("\nSearch metrics:\n" + getMetrics());
+        }
+    }
+
+
+    @Override
+    public boolean search() {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        startTime = System.currentTimeMillis();
+        solutionNode = null;
+        solutionCount = 0;
+        taskMetrics = new SearchMetrics(rootNode.getMetrics());
+        taskCount = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SearchTask(new Node(rootNode), null, -1, 0, 0));
+            stealCount = pool.getStealCount();
+        } finally {
+            pool.shutdown();
+        }
+        endTime = System.currentTimeMillis();
+        event.finish(this);
+        if (listener != null) {
+            listener.searchFinished();
+        }
+        return solutionNode != null;
+    }
+
+
+    /**
+     * A subtree of the search. The root task searches the whole tree; any other task searches the right branch
+     * var != val of a decision taken in its parent.
+     */
+    @SuppressWarnings("serial")
+    private class SearchTask extends RecursiveTask<Long> {
+
+        // private search state, copied from the parent when the task was forked
+        private Node node;
+        // MAC only: engine of the root task, or a copy of the parent's, which holds for the copied node
+        private Propagator propagator;
+        // refuted decision, or -1 for the root task
+        private int refutedVar;
+        private int refutedVal;
+        private int depth;
+
+
+        SearchTask(Node node, Propagator propagator, int refutedVar, int refutedVal, int depth) {
+            this.node = node;
+            this.propagator = propagator;
+            this.refutedVar = refutedVar;
+            this.refutedVal = refutedVal;
+            this.depth = depth;
+        }
+
+
+        @Override
+        protected Long compute() {
+            try {
+                return search();
+            } finally {
+                taskFinished(node);
+                node = null;
+                propagator = null;
+            }
+        }
+
+
+        private long search() {
+            if (stopFlag.get()) {
+                return 0L;
+            }
+            if (mac && propagator == null) {
+                // only the root task starts from scratch; forked tasks take over their parent's engine state
+                propagator = propagatorName.equalsIgnoreCase("ac6") ? new AC6Propagator(csp) : new AC3Propagator();
+                if (!propagator.initialise(node)) {
+                    return 0L;
+                }
+            }
+            if (refutedVar == -1) {
+                if (node.completeAssignment()) {
+                    return solutionFound(node);
+                }
+                return explore(depth);
+            }
+            node.pushLevel();
+            node.deleteValue(refutedVar, refutedVal);
+            if (node.getDomains().isEmpty(refutedVar) || !propagate(refutedVar)) {
+                return 0L;
+            }
+            return explore(depth);
+        }
+
+
+        /**
+         * Branches on the next variable, forking the right branch while within the split depth.
+         * @return number of solutions found below the current node; at most one unless counting all.
+         */
+        private long explore(int depth) {
+            if (stopFlag.get()) {
+                return 0;
+            }
+            int var = dynamicOrdering ? node.selectVarDynamic() : node.selectVar();
+            int val = node.selectVal(var);
+
+            SearchTask right = null;
+            if (depth < splitDepth) {
+                right = new SearchTask(new Node(node), mac ? propagator.copy() : null, var, val, depth + 1);
+                right.fork();
+            }
+
+            long solutions = 0;
+            node.pushLevel();
+            node.assign(var, val);
+            if (node.completeAssignment()) {
+                solutions += solutionFound(node);
+            } else if (propagate(var)) {
+                solutions += explore(depth + 1);
+            }
+            node.popLevel();
+
+            if (right != null) {
+                // runs the task here unless another thread stole it, and then helps with other tasks while waiting
+                solutions += right.join();
+            } else if (!stopFlag.get()) {
+                node.pushLevel();
+                node.deleteValue(var, val);
+                if (!node.getDomains().isEmpty(var) && propagate(var)) {
+                    solutions += explore(depth + 1);
+                }
+                node.popLevel();
+            }
+            return solutions;
+        }
+
+
+        /**
+         * Forward checks the future variables, or restores arc consistency, after a decision on var.
+         */
+        private boolean propagate(int var) {
+            if (mac) {
+                return propagator.propagate(node, var);
+            }
+            return node.reviseFutureArcs(var);
+        }
+    }
+
+
+    /**
+     * Adds the metrics of a task that has finished to those of the others.
+     */
+    private synchronized void taskFinished(Node node) {
+        taskMetrics.add(node.getMetrics());
+        taskCount++;
+    }
+
+
+    /**
+     * Records a solution found by a task: keeps the first one, passes each to the listener, and stops every task once
+     * the solution limit is reached or the listener asks to.
+     * @return 1 if the solution was counted, 0 if the limit had already been reached by other tasks.
+     */
+    private synchronized long solutionFound(Node node) {
+        if (solutionLimit != 0 && solutionCount >= solutionLimit) {
+            return 0;
+        }
+        solutionCount++;
+        if (solutionNode == null) {
+            solutionNode = new Node(node);
+        }
+        boolean more = listener == null || listener.solutionFound(node.getDomains());
+        if (!more || solutionCount == solutionLimit) {
+            stopFlag.set(true);
+        }
+        return 1;
+    }
+
+
+    @Override
+    public int[] getSolution() {
+        return solutionNode == null ? null : solutionNode.getAssignment();
+    }
+
+
+    /**
+     * @return a copy of the search state holding the first solution, or the root node if there is none.
+     */
+    @Override
+    public Node getNode() {
+        return solutionNode == null ? rootNode : solutionNode;
+    }
+
+
+    /**
+     * Adds up the metrics of every task. Each task counted its own work on its own Node, so nothing was shared while
+     * searching, and handed them over when it finished.
+     */
+    @Override
+    public synchronized SearchMetrics getMetrics() {
+        // the root node, counted by rootNode rather than by the copy the root task searches from
+        SearchMetrics metrics = new SearchMetrics(rootNode.getMetrics());
+        metrics.add(rootNode.getMetrics());
+        if (taskMetrics != null) {
+            metrics.add(taskMetrics);
+        }
+        return metrics;
+    }
+
+
+    /**
+     * @return nodes explored by all tasks together.
+     */
+    @Override
+    public long getNodeCount() {
+        return getMetrics().getNodes();
+    }
+
+
+    @Override
+    public long getRevisionCount() {
+        return getMetrics().getRevisions();
+    }
+
+
+    @Override
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+
+    @Override
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+
+
+    @Override
+    public String getName() {
+        String name = mac ? "MAC" : "FC";
+        return name + " (" + (dynamicOrdering ? heuristic.getLabel() : "static")
+                + (mac ? ", " + propagatorName.toUpperCase() : "")
+                + (residualRevise ? ", AC3rm" : "") + (domainOrderedQueue ? ", domain-ordered queue" : "")
+                + (valHeuristic != ValHeuristic.MIN ? ", " + valHeuristic.getLabel() : "") + ")";
+    }
+}
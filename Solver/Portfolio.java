@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Class which runs several solver configurations concurrently on one shared, read-only BinaryCSP, each in its own
+ * thread. The first configuration to finish, with a solution or with a proof that there is none, wins, and the others
+ * are stopped through a shared flag.
+ */
+public class Portfolio {
+
+    private BinaryCSP csp;
+    private ArrayList<Solver> solvers;
+    // the configuration that finished first
+    private Solver winner;
+    private long startTime;
+    private long endTime;
+
+
+    /**
+     * Class constructor. Uses the default configurations.
+     * @param csp the instance representing the binary constraint problem.
+     */
+    public Portfolio(BinaryCSP csp) {
+        this(csp, defaultConfigurations(csp));
+    }
+
+
+    /**
+     * Class constructor
+     * @param csp the instance representing the binary constraint problem.
+     * @param solvers the configurations to run, each with its own search state.
+     */
+    public Portfolio(BinaryCSP csp, ArrayList<Solver> solvers) {
+        this.csp = csp;
+        this.solvers = solvers;
+    }
+
+
+    /**
+     * Forward checking and MAC, with static and dynamic ordering, MAC with both propagation engines, and MAC with
+     * dom/wdeg ordering.
+     */
+    public static ArrayList<Solver> defaultConfigurations(BinaryCSP csp) {
+        ArrayList<Solver> solvers = new ArrayList<>();
+        solvers.add(new ForwardChecking(csp, false));
+        solvers.add(new ForwardChecking(csp, true));
+        for (boolean dynamicOrdering : new boolean[]{false, true}) {
+            solvers.add(new MaintainArcConsistency(csp, dynamicOrdering));
+            MaintainArcConsistency ac6Solver = new MaintainArcConsistency(csp, dynamicOrdering);
+            ac6Solver.setPropagator(new AC6Propagator(csp));
+            solvers.add(ac6Solver);
+        }
+        MaintainArcConsistency wdegSolver = new MaintainArcConsistency(csp, true);
+        wdegSolver.setVarHeuristic(VarHeuristic.DOM_WDEG);
+        solvers.add(wdegSolver);
+        return solvers;
+    }
+
+
+    /**
+     * Method called from Main to initiate the portfolio.
+     */
+    public void solve() {
+        System.out.println("Begin solving with a portfolio of " + solvers.size() + " configurations...\n");
+        for (Solver solver : solvers) {
+            System.out.println("  " + solver.getName());
+        }
+        System.out.println();
+        if (search()) {
+            System.out.println("Solution found by " + winner.getName());
+            winner.getNode().printNodeDetails();
+        } else {
+            System.out.println("No solution found, proved by " + winner.getName());
+        }
+        System.out.println("Number of nodes: " + winner.getNodeCount());
+        System.out.println("Number of arc revisions: " + winner.getRevisionCount());
+        System.out.println("Time elapsed: " + Long.toString(endTime - startTime) + "ms");
+        System.out.println("\nNodes explored by each configuration before it finished or was stopped:");
+        for (Solver solver : solvers) {
+            System.out.println("  " + solver.getName() + ": " + solver.getNodeCount());
+        }
+    }
+
+
+    /**
+     * Runs every configuration until the first one finishes, then stops the others and waits for them.
+     * @return true if the winning configuration found a solution.
+     */
+    public boolean search() {
+        startTime = System.currentTimeMillis();
+        AtomicBoolean stopFlag = new AtomicBoolean(false);
+        // one thread per configuration, even with fewer cores: time slicing still lets the fastest one finish first
+        ExecutorService pool = Executors.newFixedThreadPool(solvers.size());
+        ExecutorCompletionService<Solver> completion = new ExecutorCompletionService<>(pool);
+        for (Solver solver : solvers) {
+            solver.setStopFlag(stopFlag);
+            completion.submit(() -> {
+                solver.search();
+                return solver;
+            });
+        }
+        winner = null;
+        ExecutionException failure = null;
+        try {
+            // a configuration that failed does not win; wait for the next one to finish
+            for (int k = 0; k < solvers.size() && winner == null; k++) {
+                try {
+                    winner = completion.take().get();
+                } catch (ExecutionException e) {
+                    failure = e;
+                }
+            }
+            stopFlag.set(true);
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            stopFlag.set(true);
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        endTime = System.currentTimeMillis();
+        if (winner == null) {
+            throw new IllegalStateException("No portfolio configuration finished", failure);
+        }
+        return winner.getSolution() != null;
+    }
+
+
+    /**
+     * @return the configuration that finished first, once search() has returned.
+     */
+    public Solver getWinner() {
+        return winner;
+    }
+
+
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+}
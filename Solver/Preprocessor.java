@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+
+
+/**
+ * Simplifies a problem once, after it has been read and before search:
+ *
+ *   1. The root is made arc consistent with AC6, as propagation during search only ever starts from the variable just
+ *      assigned. The domain bounds are tightened to the values left, and the values in between that lost their
+ *      supports are left out of the domains.
+ *   2. Constraints that allow every pair of the values left are dropped, e.g. the constraints of a Sudoku clue, once
+ *      its value has been removed from its neighbours.
+ *
+ * Constraints listed more than once on the same scope have already been merged by BinaryCSP; the report counts them.
+ *
+ * Variables keep their numbers and the solutions are unchanged, so a solution of the simplified problem is a solution
+ * of the original one.
+ */
+public class Preprocessor {
+
+    private BinaryCSP csp;
+    // false once arc consistency has wiped out a domain: the problem has no solution
+    private boolean consistent;
+    private int duplicatesMerged;
+    private long valuesRemoved;
+    private int universalDropped;
+    private long elapsedTime;
+
+
+    /**
+     * Class constructor
+     * @param csp the problem to simplify, which is only read.
+     */
+    public Preprocessor(BinaryCSP csp) {
+        this.csp = csp;
+    }
+
+
+    /**
+     * Runs the two stages.
+     * @return the simplified problem. If it has no solution, which isConsistent() then tells, the problem unchanged,
+     * as its domains cannot be tightened any further than empty.
+     */
+    public BinaryCSP preprocess() {
+        long start = System.currentTimeMillis();
+        duplicatesMerged = csp.getNoDuplicates();
+        valuesRemoved = 0;
+        universalDropped = 0;
+
+        ArrayList<Integer> varList = new ArrayList<>();
+        for (int i = 0; i < csp.getNoVariables(); i++) {
+            varList.add(i);
+        }
+        Node node = new Node(csp, new DomainStore(csp), varList);
+        consistent = new AC6Propagator(csp).initialise(node);
+        BinaryCSP result = consistent ? reduce(node.getDomains()) : csp;
+        elapsedTime = System.currentTimeMillis() - start;
+        return result;
+    }
+
+
+    /**
+     * Builds the problem over the arc consistent domains: tightened bounds, the values in between that are gone left
+     * out, and every constraint that does not allow all the pairs left restricted to them.
+     */
+    private BinaryCSP reduce(DomainStore domains) {
+        int n = csp.getNoVariables();
+        int[][] bounds = new int[n][2];
+        long[][] excluded = new long[n][];
+        for (int var = 0; var < n; var++) {
+            int lb = domains.minValue(var);
+            int ub = lb;
+            for (int val = lb; val != DomainStore.NONE; val = domains.nextValue(var, val + 1)) {
+                ub = val;
+            }
+            bounds[var][0] = lb;
+            bounds[var][1] = ub;
+            excluded[var] = new long[BinaryConstraint.wordsFor(lb, ub)];
+            for (int val = lb; val <= ub; val++) {
+                if (!domains.contains(var, val)) {
+                    excluded[var][(val - lb) >> 6] |= 1L << (val - lb);
+                }
+            }
+            valuesRemoved += csp.getUB(var) - csp.getLB(var) + 1 - domains.size(var);
+        }
+
+        ArrayList<BinaryConstraint> constraints = new ArrayList<>();
+        for (BinaryConstraint bc : csp.getConstraints()) {
+            int x = bc.getFirstVar();
+            int y = bc.getSecondVar();
+            int words = BinaryConstraint.wordsFor(bounds[y][0], bounds[y][1]);
+            long[][] rows = new long[bounds[x][1] - bounds[x][0] + 1][words];
+            boolean universal = true;
+            for (int a = domains.minValue(x); a != DomainStore.NONE; a = domains.nextValue(x, a + 1)) {
+                long[] row = rows[a - bounds[x][0]];
+                for (int b = domains.minValue(y); b != DomainStore.NONE; b = domains.nextValue(y, b + 1)) {
+                    if (bc.allows(x, a, b)) {
+                        int bit = b - bounds[y][0];
+                        row[bit >> 6] |= 1L << bit;
+                    } else {
+                        universal = false;
+                    }
+                }
+            }
+            if (universal) {
+                universalDropped++;
+            } else {
+                constraints.add(new BinaryConstraint(x, y, bounds[x][0], bounds[y][0], bounds[y][1], rows));
+            }
+        }
+        return new BinaryCSP(bounds, constraints, excluded);
+    }
+
+
+    /**
+     * @return false if arc consistency at the root wiped out a domain, so the problem has no solution.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+
+    /**
+     * @return number of constraints merged into another one on the same scope, by BinaryCSP.
+     */
+    public int getDuplicatesMerged() {
+        return duplicatesMerged;
+    }
+
+
+    /**
+     * @return number of values removed by arc consistency at the root.
+     */
+    public long getValuesRemoved() {
+        return valuesRemoved;
+    }
+
+
+    /**
+     * @return number of constraints dropped as they allow every pair of the values left.
+     */
+    public int getUniversalDropped() {
+        return universalDropped;
+    }
+
+
+    /**
+     * @return one line on what was removed, for output.
+     */
+    public String getReport() {
+        if (!consistent) {
+            return "Preprocessing: merged " + duplicatesMerged + " duplicate constraints, arc consistency wiped out a "
+                    + "domain (" + elapsedTime + "ms)";
+        }
+        return "Preprocessing: merged " + duplicatesMerged + " duplicate constraints, removed " + valuesRemoved
+                + " values by arc consistency, dropped " + universalDropped + " universal constraints (" + elapsedTime
+                + "ms)";
+    }
+}
@@ -0,0 +1,54 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+
+/**
+ * Flight Recorder event spanning the propagation of one decision. There is one per node, so it is disabled by default
+ * and only recorded above a duration threshold once enabled, e.g. with a .jfc settings file holding
+ *
+ *   <event name="csp.Propagation"><setting name="enabled">true</setting></event>
+ */
+@Name("csp.Propagation")
+@Label("CSP Propagation")
+@Category("Constraint Solver")
+@Description("Propagation of one decision: forward checking, AC3 or AC6")
+@Enabled(false)
+@Threshold("1 ms")
+public class PropagationEvent extends Event {
+
+    @Label("Variable")
+    int variable;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Values Pruned")
+    long valuesPruned;
+
+    @Label("Consistent")
+    boolean consistent;
+
+
+    /**
+     * Ends the event and records it, if the event is enabled and took long enough.
+     * @param variable the variable of the decision propagated.
+     * @param depth the depth of the node.
+     * @param valuesPruned values deleted by the propagation.
+     * @param consistent false if a domain was wiped out.
+     */
+    public void finish(int variable, int depth, long valuesPruned, boolean consistent) {
+        end();
+        if (shouldCommit()) {
+            this.variable = variable;
+            this.depth = depth;
+            this.valuesPruned = valuesPruned;
+            this.consistent = consistent;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Propagation engine used by MaintainArcConsistency to make a node arc consistent after each branching decision.
+ * Implementations keep their own work counters so that engines can be compared per node.
+ */
+public interface Propagator {
+
+    /**
+     * Called once on the root node, before search starts.
+     *
+     * @param node the root node
+     * @return false if a domain was wiped out, i.e. the problem has no solution.
+     */
+    boolean initialise(Node node);
+
+
+    /**
+     * Propagates the decision just made on var, either its assignment or the deletion of one of its values. The
+     * decision has been recorded on the node's trail at the current decision level.
+     *
+     * @param node the node the decision was made on
+     * @param var  the variable of the decision
+     * @return false if a domain was wiped out.
+     */
+    boolean propagate(Node node, int var);
+
+
+    /**
+     * Creates an engine for a copy of the node this one propagates, e.g. a subtree forked by ParallelSearch, taking
+     * over the state built up by initialise and propagate so far instead of being initialised again. Counters start
+     * from 0.
+     *
+     * @return the new engine
+     */
+    Propagator copy();
+
+
+    /**
+     * @return short name of the engine, e.g. for output.
+     */
+    String getName();
+
+
+    /**
+     * @return number of calls to propagate so far.
+     */
+    long getCalls();
+
+
+    /**
+     * @return number of times a value was tested for a support so far.
+     */
+    long getSupportChecks();
+
+
+    /**
+     * @return number of values deleted by propagation so far, not counting the decisions themselves.
+     */
+    long getValuesDeleted();
+}
@@ -0,0 +1,80 @@
+/**
+ * Restart strategies, which cut a search off once it has explored a number of nodes and start it again from the root.
+ * The cutoff grows from one run to the next, so search stays complete:
+ *
+ *   LUBY       LUBY_UNIT times the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+ *   GEOMETRIC  GEOMETRIC_BASE nodes for the first run, GEOMETRIC_FACTOR times more for every following one.
+ */
+public enum RestartPolicy {
+
+    LUBY("luby"),
+    GEOMETRIC("geometric");
+
+    public static final long LUBY_UNIT = 100;
+    public static final long GEOMETRIC_BASE = 100;
+    public static final double GEOMETRIC_FACTOR = 1.5;
+
+    private final String label;
+
+
+    RestartPolicy(String label) {
+        this.label = label;
+    }
+
+
+    /**
+     * @param name luby or geometric, in any case.
+     * @throws IllegalArgumentException for any other name.
+     */
+    public static RestartPolicy parse(String name) {
+        switch (name.toLowerCase()) {
+            case "luby":
+                return LUBY;
+            case "geometric":
+                return GEOMETRIC;
+            default:
+                throw new IllegalArgumentException("unknown restart policy " + name);
+        }
+    }
+
+
+    /**
+     * @param run number of restarts so far, 0 for the first run.
+     * @return number of nodes the run may explore before the search restarts.
+     */
+    public long cutoff(int run) {
+        if (this == LUBY) {
+            return LUBY_UNIT * luby(run + 1);
+        }
+        return (long) Math.min(GEOMETRIC_BASE * Math.pow(GEOMETRIC_FACTOR, run), Long.MAX_VALUE);
+    }
+
+
+    /**
+     * @return the i-th term of the Luby sequence, counting from 1.
+     */
+    static long luby(long i) {
+        // find the smallest k with 2^k - 1 >= i
+        int k = 1;
+        while ((1L << k) - 1 < i) {
+            k++;
+        }
+        while ((1L << k) - 1 != i) {
+            // i lies in the repeated prefix of the sequence up to 2^k - 1: recurse into it
+            i -= (1L << (k - 1)) - 1;
+            k = 1;
+            while ((1L << k) - 1 < i) {
+                k++;
+            }
+        }
+        return 1L << (k - 1);
+    }
+
+
+    /**
+     * @return short description for output, e.g. in a solver's name.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
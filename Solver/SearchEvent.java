@@ -0,0 +1,51 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight Recorder event spanning one complete search, e.g. recorded with
+ *
+ *   java -XX:StartFlightRecording=filename=search.jfr Main 20Queens.csp -m
+ */
+@Name("csp.Search")
+@Label("CSP Search")
+@Category("Constraint Solver")
+@Description("One search of a solver, from the root to its last solution or its proof that there is none")
+public class SearchEvent extends Event {
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Solutions")
+    long solutions;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Revisions")
+    long revisions;
+
+    @Label("Wipeouts")
+    long wipeouts;
+
+
+    /**
+     * Ends the event and records it, if the event is enabled, with the outcome of the solver's search. The metrics are
+     * only collected from the solver if the event is recorded.
+     */
+    public void finish(Solver solver) {
+        end();
+        if (shouldCommit()) {
+            SearchMetrics metrics = solver.getMetrics();
+            this.algorithm = solver.getName();
+            this.solutions = solver.getSolutionCount();
+            this.nodes = metrics.getNodes();
+            this.revisions = metrics.getRevisions();
+            this.wipeouts = metrics.getWipeouts();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.util.Arrays;
+
+
+/**
+ * Counters of one search. Each Node, and so each thread of a parallel search, owns its metrics and updates them
+ * without synchronisation; the metrics of several searches are combined with add() once they have finished.
+ *
+ * Counting is always on. Timing of revisions and the per-depth histograms are off by default: revisions are then
+ * timed with System.nanoTime() one in SAMPLE_INTERVAL, and the total estimated from the sample.
+ */
+public class SearchMetrics {
+
+    // one revision in this many is timed; a power of two
+    public static final int SAMPLE_INTERVAL = 64;
+
+    private long nodes = 0;
+    private long revisions = 0;
+    private long effectiveRevisions = 0;
+    private long valuesPruned = 0;
+    private long wipeouts = 0;
+    private long backtracks = 0;
+    private long supportChecks = 0;
+    private int maxDepth = 0;
+
+    private boolean timing = false;
+    private long sampledRevisions = 0;
+    private long sampledNanos = 0;
+
+    private boolean depthHistograms = false;
+    // per decision level, from the root at 0
+    private long[] nodesPerDepth = new long[0];
+    private long[] wipeoutsPerDepth = new long[0];
+
+
+    public SearchMetrics() {
+    }
+
+
+    /**
+     * Creates empty metrics with the same timing and histogram settings as other.
+     */
+    public SearchMetrics(SearchMetrics other) {
+        this.timing = other.timing;
+        this.depthHistograms = other.depthHistograms;
+    }
+
+
+    /**
+     * Counts a node entered at the given depth.
+     */
+    public void node(int depth) {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if (depthHistograms) {
+            nodesPerDepth = increment(nodesPerDepth, depth);
+        }
+    }
+
+
+    public void backtrack() {
+        backtracks++;
+    }
+
+
+    /**
+     * Counts a revision starting now.
+     * @return the start time to pass to endRevision, or 0 if this revision is not timed.
+     */
+    public long startRevision() {
+        revisions++;
+        if (timing && (revisions & (SAMPLE_INTERVAL - 1)) == 0) {
+            return System.nanoTime();
+        }
+        return 0;
+    }
+
+
+    /**
+     * Completes a revision.
+     * @param start value returned by startRevision.
+     * @param pruned number of values the revision deleted.
+     * @param checks number of values whose support was looked for.
+     */
+    public void endRevision(long start, int pruned, int checks) {
+        if (pruned > 0) {
+            effectiveRevisions++;
+            valuesPruned += pruned;
+        }
+        supportChecks += checks;
+        if (start != 0) {
+            sampledNanos += System.nanoTime() - start;
+            sampledRevisions++;
+        }
+    }
+
+
+    /**
+     * Counts the work of a propagator that does not revise arcs, e.g. AC6.
+     * @param pruned number of values the propagation deleted.
+     * @param checks number of values whose support was looked for.
+     */
+    public void propagated(long pruned, long checks) {
+        valuesPruned += pruned;
+        supportChecks += checks;
+    }
+
+
+    /**
+     * Counts a domain emptied by propagation at the given depth.
+     */
+    public void wipeout(int depth) {
+        wipeouts++;
+        if (depthHistograms) {
+            wipeoutsPerDepth = increment(wipeoutsPerDepth, depth);
+        }
+    }
+
+
+    private static long[] increment(long[] histogram, int depth) {
+        if (depth >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, Math.max(depth + 1, histogram.length * 2));
+        }
+        histogram[depth]++;
+        return histogram;
+    }
+
+
+    /**
+     * Adds the counts of another search, e.g. of one task of a parallel search, to these.
+     */
+    public void add(SearchMetrics other) {
+        nodes += other.nodes;
+        revisions += other.revisions;
+        effectiveRevisions += other.effectiveRevisions;
+        valuesPruned += other.valuesPruned;
+        wipeouts += other.wipeouts;
+        backtracks += other.backtracks;
+        supportChecks += other.supportChecks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        sampledRevisions += other.sampledRevisions;
+        sampledNanos += other.sampledNanos;
+        nodesPerDepth = addHistogram(nodesPerDepth, other.nodesPerDepth);
+        wipeoutsPerDepth = addHistogram(wipeoutsPerDepth, other.wipeoutsPerDepth);
+    }
+
+
+    private static long[] addHistogram(long[] histogram, long[] other) {
+        if (other.length > histogram.length) {
+            histogram = Arrays.copyOf(histogram, other.length);
+        }
+        for (int depth = 0; depth < other.length; depth++) {
+            histogram[depth] += other[depth];
+        }
+        return histogram;
+    }
+
+
+    /**
+     * @param timing whether a sample of the revisions is timed.
+     */
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+
+    /**
+     * @param depthHistograms whether nodes and wipeouts are counted per depth.
+     */
+    public void setDepthHistograms(boolean depthHistograms) {
+        this.depthHistograms = depthHistograms;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    public long getRevisions() {
+        return revisions;
+    }
+
+
+    /**
+     * @return revisions that deleted at least one value.
+     */
+    public long getEffectiveRevisions() {
+        return effectiveRevisions;
+    }
+
+
+    public long getValuesPruned() {
+        return valuesPruned;
+    }
+
+
+    public long getWipeouts() {
+        return wipeouts;
+    }
+
+
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+
+    public long getSupportChecks() {
+        return supportChecks;
+    }
+
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+
+    /**
+     * @return the estimated total time spent revising arcs in nanoseconds, or -1 if no revision was timed.
+     */
+    public long getRevisionNanos() {
+        if (sampledRevisions == 0) {
+            return -1;
+        }
+        return (long) ((double) sampledNanos / sampledRevisions * revisions);
+    }
+
+
+    /**
+     * @return the number of nodes entered at each depth; empty unless histograms are on.
+     */
+    public long[] getNodesPerDepth() {
+        return nodesPerDepth.clone();
+    }
+
+
+    /**
+     * @return the number of wipeouts at each depth; empty unless histograms are on.
+     */
+    public long[] getWipeoutsPerDepth() {
+        return wipeoutsPerDepth.clone();
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("Nodes: ").append(nodes).append(", maximum depth: ").append(maxDepth)
+                .append(", backtracks: ").append(backtracks).append('\n');
+        text.append("Revisions: ").append(revisions).append(", effective: ").append(effectiveRevisions)
+                .append(", values pruned: ").append(valuesPruned).append(", wipeouts: ").append(wipeouts)
+                .append(", support checks: ").append(supportChecks).append('\n');
+        long revisionNanos = getRevisionNanos();
+        if (revisionNanos >= 0) {
+            text.append(String.format("Revision time: %.3fms (estimated from %d timed revisions, %.0fns each)%n",
+                    revisionNanos / 1e6, sampledRevisions, (double) sampledNanos / sampledRevisions));
+        }
+        if (nodesPerDepth.length > 0) {
+            text.append("Depth: nodes, wipeouts\n");
+            for (int depth = 0; depth < nodesPerDepth.length; depth++) {
+                long depthWipeouts = depth < wipeoutsPerDepth.length ? wipeoutsPerDepth[depth] : 0;
+                if (nodesPerDepth[depth] > 0 || depthWipeouts > 0) {
+                    text.append("  ").append(depth).append(": ").append(nodesPerDepth[depth]).append(", ")
+                            .append(depthWipeouts).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+}
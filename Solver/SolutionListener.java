@@ -0,0 +1,19 @@
+/**
+ * Receives the solutions of a search as they are found, when a solver enumerates more than one.
+ */
+public interface SolutionListener {
+
+    /**
+     * Called on every solution. The domains hold exactly one value per variable and are only valid during the call.
+     *
+     * @return true to keep searching, false to stop.
+     */
+    boolean solutionFound(DomainStore domains);
+
+
+    /**
+     * Called once the search is over, e.g. to flush buffered output.
+     */
+    default void searchFinished() {
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+
+/**
+ * Streams solutions to a Writer, one line each with the values of the variables in order, separated by spaces. The
+ * line is formatted into a reused buffer, so that writing a solution allocates nothing.
+ */
+public class SolutionWriter implements SolutionListener {
+
+    private Writer writer;
+    private char[] line;
+
+
+    /**
+     * Class constructor
+     * @param writer where solutions are written; it should be buffered.
+     * @param noVariables number of variables of the CSP.
+     */
+    public SolutionWriter(Writer writer, int noVariables) {
+        this.writer = writer;
+        // an int takes at most 11 characters, plus the separator
+        this.line = new char[Math.max(noVariables * 12, 1)];
+    }
+
+
+    /**
+     * @throws UncheckedIOException if the solution cannot be written.
+     */
+    @Override
+    public boolean solutionFound(DomainStore domains) {
+        int length = 0;
+        for (int var = 0; var < domains.getNoVariables(); var++) {
+            if (var > 0) {
+                line[length++] = ' ';
+            }
+            length = appendInt(domains.minValue(var), length);
+        }
+        line[length++] = '\n';
+        try {
+            writer.write(line, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+
+    @Override
+    public void searchFinished() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Writes the decimal digits of value into the line at position start.
+     * @return the position after the last digit.
+     */
+    private int appendInt(int value, int start) {
+        long v = value;
+        if (v < 0) {
+            line[start++] = '-';
+            v = -v;
+        }
+        int end = start;
+        do {
+            line[end++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        // digits were written least significant first
+        for (int i = start, j = end - 1; i < j; i++, j--) {
+            char digit = line[i];
+            line[i] = line[j];
+            line[j] = digit;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Common interface of the search algorithms, so that they can be run side by side, e.g. by Portfolio. A solver owns
+ * all of its search state; the BinaryCSP it is given is only read, and may be shared between solvers and threads.
+ */
+public interface Solver {
+
+    /**
+     * Runs the search and prints its outcome and statistics.
+     */
+    void solve();
+
+
+    /**
+     * Runs the search without printing anything.
+     *
+     * @return true if a solution was found. False if there is none, or if the search was stopped.
+     */
+    boolean search();
+
+
+    /**
+     * Makes the search stop as soon as the given flag is set. The flag may be shared by several solvers.
+     */
+    void setStopFlag(AtomicBoolean stopFlag);
+
+
+    /**
+     * Sets how many solutions the search looks for before it stops: 1 by default, 0 for all of them.
+     */
+    void setSolutionLimit(long solutionLimit);
+
+
+    /**
+     * Passes every solution found to the given listener, e.g. to stream them out while enumerating.
+     */
+    void setSolutionListener(SolutionListener listener);
+
+
+    /**
+     * Also times a sample of the revisions and counts nodes and wipeouts per depth, at a small cost, and makes solve()
+     * print these metrics.
+     */
+    void setDetailedMetrics(boolean detailedMetrics);
+
+
+    /**
+     * @return number of solutions found by the last search().
+     */
+    long getSolutionCount();
+
+
+    /**
+     * @return the value of each variable in the (first) solution found, or null if search() did not find one.
+     */
+    int[] getSolution();
+
+
+    /**
+     * @return the search state, holding the node and revision counts.
+     */
+    Node getNode();
+
+
+    /**
+     * @return number of search tree nodes explored by the last search().
+     */
+    long getNodeCount();
+
+
+    /**
+     * @return number of arc revisions made by the last search().
+     */
+    long getRevisionCount();
+
+
+    /**
+     * @return the counters of the last search(); for a parallel search, those of all its threads together.
+     */
+    SearchMetrics getMetrics();
+
+
+    /**
+     * @return duration of the last search() in milliseconds.
+     */
+    long getElapsedTime();
+
+
+    /**
+     * @return short description of the algorithm and its options, e.g. for output.
+     */
+    String getName();
+}
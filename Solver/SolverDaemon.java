@@ -0,0 +1,448 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Long-running solver process, so that many small instances do not each pay for a JVM start. Clients connect over a
+ * localhost TCP port or a Unix-domain socket and send requests, one JSON object per line, for example
+ *
+ *   {"id": 1, "file": "8Queens.csp", "flags": ["-m", "-d"]}
+ *   {"id": 2, "csp": "2\n0, 1\n0, 1\nc(0, 1)\n0, 1\n", "flags": "-c"}
+ *
+ * with the instance given as a file path or inline, and the solver flags of Main (see SolverOptions.parse). Each request
+ * gets one JSON line back, in the order the requests finish, carrying the request's id. {"command": "stats"} reports the
+ * daemon's counters and {"command": "shutdown"} stops it.
+ *
+ * Requests from all connections are solved by a fixed pool of threads behind a bounded queue. Once the pool and the
+ * queue are full, a connection's next request is not read until a slot frees up, which pushes back on the client
+ * through the socket. Usage:
+ *
+ *   java SolverDaemon [-l <port>] [-u <socket path>] [-w <workers>] [-b <queue capacity>] [-c <cache MB>]
+ *
+ * Instances named by file are kept in a CSPCache (256 MB by default), so each file is only parsed again once it
+ * changes.
+ */
+public class SolverDaemon {
+
+    public static final int DEFAULT_PORT = 7878;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private ThreadPoolExecutor executor;
+    // one permit per request that may be running or queued
+    private Semaphore slots;
+    private ServerSocketChannel server;
+    private volatile boolean running;
+
+    // instances of file requests, shared by all connections
+    private CSPCache cache;
+
+    private AtomicLong requestsServed = new AtomicLong();
+    private AtomicLong requestsFailed = new AtomicLong();
+
+
+    /**
+     * Class constructor
+     * @param workers number of requests solved at the same time.
+     * @param queueCapacity number of requests accepted while all workers are busy.
+     * @param cache cache of the instances of file requests, or null to read the file on every request.
+     */
+    public SolverDaemon(int workers, int queueCapacity, CSPCache cache) {
+        this.cache = cache;
+        // the permits do the bounding; a worker releases its permit just before it polls the queue again, so the queue
+        // has room for one more request per worker
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity + workers), runnable -> {
+                    Thread thread = new Thread(runnable, "solver");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        slots = new Semaphore(workers + queueCapacity);
+    }
+
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        String socketPath = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        long cacheBudget = CSPCache.DEFAULT_BUDGET;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            String arg = args[i++];
+            for (int j = 1; j < arg.length(); j++) {
+                char flag = arg.charAt(j);
+                if (i >= args.length) {
+                    System.err.println("ParseCmdLine: -" + flag + " requires a value");
+                    return;
+                }
+                String value = args[i++];
+                try {
+                    switch (flag) {
+                        // TCP port on the loopback interface
+                        case 'l':
+                            port = Integer.parseInt(value);
+                            break;
+                        // Unix-domain socket instead of TCP
+                        case 'u':
+                            socketPath = value;
+                            break;
+                        case 'w':
+                            workers = Integer.parseInt(value);
+                            break;
+                        case 'b':
+                            queueCapacity = Integer.parseInt(value);
+                            break;
+                        // memory budget of the instance cache in MB, 0 to disable it
+                        case 'c':
+                            cacheBudget = Long.parseLong(value) << 20;
+                            break;
+                        default:
+                            System.err.println("ParseCmdLine: illegal option " + flag);
+                            return;
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("ParseCmdLine: -" + flag + " requires a number");
+                    return;
+                }
+            }
+        }
+
+        SolverDaemon daemon = new SolverDaemon(workers, queueCapacity,
+                cacheBudget > 0 ? new CSPCache(cacheBudget) : null);
+        try {
+            if (socketPath != null) {
+                daemon.serveUnix(Paths.get(socketPath));
+            } else {
+                daemon.serveTcp(port);
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        }
+    }
+
+
+    /**
+     * Serves clients on the given port of the loopback interface until shut down.
+     */
+    public void serveTcp(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        System.out.println("Listening on " + server.getLocalAddress() + " with " + executor.getCorePoolSize()
+                + " workers");
+        serve();
+    }
+
+
+    /**
+     * Serves clients on a Unix-domain socket at the given path until shut down. A file left at the path by an
+     * earlier run is replaced.
+     */
+    public void serveUnix(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        System.out.println("Listening on " + path + " with " + executor.getCorePoolSize() + " workers");
+        try {
+            serve();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+
+    /**
+     * Accepts connections, each read by its own thread, until shutdown() closes the server socket.
+     */
+    private void serve() throws IOException {
+        running = true;
+        try {
+            while (running) {
+                SocketChannel client = server.accept();
+                Thread reader = new Thread(() -> handle(client), "connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (ClosedChannelException e) {
+            // closed by shutdown()
+        } finally {
+            server.close();
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Stops accepting connections and requests. Requests already accepted are still answered.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        }
+    }
+
+
+    /**
+     * Reads the requests of one connection and hands them to the pool, waiting for a free slot before reading the next
+     * one. The connection is closed once the client has stopped sending and every answer has been written.
+     */
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(inputStream(channel), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(outputStream(channel), StandardCharsets.UTF_8))) {
+            Phaser pending = new Phaser(1);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String request = line;
+                long received = System.currentTimeMillis();
+                slots.acquire();
+                pending.register();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            reply(out, respond(request, received));
+                        } finally {
+                            slots.release();
+                            pending.arriveAndDeregister();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    pending.arriveAndDeregister();
+                    reply(out, error(null, "the daemon is shutting down"));
+                }
+            }
+            pending.arriveAndAwaitAdvance();
+        } catch (IOException | UncheckedIOException e) {
+            // the client went away; its remaining answers are dropped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Writes one answer line. Answers to the same connection come from several threads, one at a time.
+     */
+    private static void reply(Writer out, String response) {
+        synchronized (out) {
+            try {
+                out.write(response);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+
+    /**
+     * Carries out one request.
+     * @param request the JSON request line.
+     * @param received when the request was read, in milliseconds.
+     * @return the JSON answer line.
+     */
+    private String respond(String request, long received) {
+        String id = null;
+        try {
+            LinkedHashMap<String, Object> fields = Json.parseObject(request);
+            id = jsonValue(fields.get("id"));
+            Object command = fields.get("command");
+            if ("shutdown".equals(command)) {
+                shutdown();
+                return "{\"id\":" + id + ",\"status\":\"SHUTDOWN\"}";
+            }
+            if ("stats".equals(command)) {
+                return "{\"id\":" + id + ",\"status\":\"STATS\",\"served\":" + requestsServed.get()
+                        + ",\"failed\":" + requestsFailed.get() + ",\"active\":" + executor.getActiveCount()
+                        + ",\"queued\":" + executor.getQueue().size() + cacheStats() + "}";
+            }
+            if (command != null) {
+                throw new IllegalArgumentException("unknown command " + command);
+            }
+
+            long started = System.currentTimeMillis();
+            SolverOptions options = SolverOptions.parse(flags(fields.get("flags")));
+            BinaryCSP csp;
+            if (fields.get("file") instanceof String) {
+                String file = (String) fields.get("file");
+                csp = cache != null ? cache.get(file) : CSPSolver.read(file);
+            } else if (fields.get("csp") instanceof String) {
+                byte[] text = ((String) fields.get("csp")).getBytes(StandardCharsets.US_ASCII);
+                csp = new BinaryCSPReader().readBinaryCSP("request " + id,
+                        Channels.newChannel(new ByteArrayInputStream(text)));
+            } else {
+                throw new IllegalArgumentException("a request needs a file or a csp");
+            }
+            SolverResult result = new CSPSolver(options).solve(csp);
+            long finished = System.currentTimeMillis();
+            requestsServed.incrementAndGet();
+
+            StringBuilder response = new StringBuilder();
+            response.append("{\"id\":").append(id)
+                    .append(",\"status\":\"").append(result.isSatisfiable() ? "SAT" : "UNSAT").append('"')
+                    .append(",\"algorithm\":").append(Json.quote(result.getAlgorithm()))
+                    .append(",\"solution\":");
+            int[] solution = result.getSolution();
+            if (solution == null) {
+                response.append("null");
+            } else {
+                response.append('[');
+                for (int var = 0; var < solution.length; var++) {
+                    response.append(var == 0 ? "" : ",").append(solution[var]);
+                }
+                response.append(']');
+            }
+            response.append(",\"solutions\":").append(result.getSolutionCount())
+                    .append(",\"nodes\":").append(result.getNodeCount())
+                    .append(",\"revisions\":").append(result.getRevisionCount())
+                    .append(",\"queueTime\":").append(started - received)
+                    .append(",\"searchTime\":").append(result.getSearchTime())
+                    .append(",\"totalTime\":").append(finished - received)
+                    .append('}');
+            return response.toString();
+        } catch (IOException | RuntimeException e) {
+            requestsFailed.incrementAndGet();
+            return error(id, e.toString());
+        }
+    }
+
+
+    /**
+     * @return the cache metrics as JSON members, or nothing without a cache.
+     */
+    private String cacheStats() {
+        if (cache == null) {
+            return "";
+        }
+        return ",\"cacheInstances\":" + cache.size() + ",\"cacheBytes\":" + cache.getBytes()
+                + ",\"cacheHits\":" + cache.getHits() + ",\"cacheMisses\":" + cache.getMisses()
+                + ",\"cacheEvictions\":" + cache.getEvictions();
+    }
+
+
+    private static String error(String id, String message) {
+        return "{\"id\":" + id + ",\"status\":\"ERROR\",\"error\":" + Json.quote(message) + "}";
+    }
+
+
+    /**
+     * @return the flags of a request, given either as an array of strings or as one string.
+     */
+    private static String[] flags(Object flags) {
+        if (flags == null) {
+            return new String[0];
+        }
+        if (flags instanceof String) {
+            String trimmed = ((String) flags).trim();
+            return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+        }
+        if (flags instanceof List) {
+            ArrayList<String> strings = new ArrayList<>();
+            for (Object flag : (List<?>) flags) {
+                strings.add(String.valueOf(flag));
+            }
+            return strings.toArray(new String[0]);
+        }
+        throw new IllegalArgumentException("flags must be a string or an array of strings");
+    }
+
+
+    /**
+     * @return the request id as JSON, to be echoed in the answer.
+     */
+    private static String jsonValue(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return Json.quote((String) value);
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("id must be a string, a number or a boolean");
+    }
+
+
+    /**
+     * Stream reading a socket channel directly, so that answers can be written to the same channel while a read is
+     * blocked. The streams of Channels hold the channel's blocking lock for the whole read.
+     */
+    private static InputStream inputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+
+    private static OutputStream outputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Options of a CSPSolver: the algorithm and the heuristics it uses, and how many solutions it looks for. The defaults
+ * are those of Main without flags: forward checking, static ordering, first solution only.
+ */
+public class SolverOptions {
+
+    private boolean mac = false;
+    // forward checking with conflict-directed backjumping instead of chronological backtracking
+    private boolean cbj = false;
+    private boolean dynamicOrdering = false;
+    // heuristic of dynamic ordering
+    private VarHeuristic varHeuristic = VarHeuristic.DOM;
+    // heuristic of value ordering
+    private ValHeuristic valHeuristic = ValHeuristic.MIN;
+    // restart strategy of the sequential solvers, null for none, and seed of their random tie-breaking
+    private RestartPolicy restartPolicy = null;
+    private long seed = 0;
+    private boolean residualRevise = false;
+    private boolean domainOrderedQueue = false;
+    // propagation engine of MAC: ac3 or ac6
+    private String propagator = "ac3";
+    // 0 for the sequential solvers, otherwise the threads of ParallelSearch
+    private int threads = 0;
+    // number of solutions to find, 0 for all of them
+    private long solutionLimit = 1;
+    // whether revisions are timed and nodes and wipeouts counted per depth
+    private boolean detailedMetrics = false;
+    // whether the problem is simplified by Preprocessor before search
+    private boolean preprocess = false;
+
+
+    /**
+     * Builds options from the solver flags of Main, e.g. {"-m", "-d", "-p", "ac6"} or {"-md", "-l", "10"}.
+     * Flags that only concern Main's output (-a, -o, -P) are not accepted; -c sets the solution limit to 0 unless -l
+     * gives one.
+     *
+     * @throws IllegalArgumentException on an unknown flag, a missing or invalid value, or flags that cannot be
+     * combined.
+     */
+    public static SolverOptions parse(String... flags) {
+        SolverOptions options = new SolverOptions();
+        boolean limited = false;
+        int i = 0;
+        while (i < flags.length) {
+            String arg = flags[i++];
+            if (!arg.startsWith("-") || arg.length() < 2) {
+                throw new IllegalArgumentException("expected a flag but found " + arg);
+            }
+            for (int j = 1; j < arg.length(); j++) {
+                char flag = arg.charAt(j);
+                switch (flag) {
+                    case 'm':
+                        options.setMac(true);
+                        break;
+                    case 'j':
+                        options.setCbj(true);
+                        break;
+                    case 'd':
+                        options.setDynamicOrdering(true);
+                        break;
+                    case 'r':
+                        options.setResidualRevise(true);
+                        break;
+                    case 'q':
+                        options.setDomainOrderedQueue(true);
+                        break;
+                    case 'c':
+                        if (!limited) {
+                            options.setSolutionLimit(0);
+                        }
+                        break;
+                    case 's':
+                        options.setDetailedMetrics(true);
+                        break;
+                    case 'x':
+                        options.setPreprocess(true);
+                        break;
+                    case 'p':
+                        options.setPropagator(value(flags, i++, flag));
+                        break;
+                    case 'D':
+                        options.setVarHeuristic(VarHeuristic.parse(value(flags, i++, flag)));
+                        break;
+                    case 'v':
+                        options.setValHeuristic(ValHeuristic.parse(value(flags, i++, flag)));
+                        break;
+                    case 'R':
+                        options.setRestartPolicy(RestartPolicy.parse(value(flags, i++, flag)));
+                        break;
+                    case 'S':
+                        options.setSeed(number(value(flags, i++, flag), flag));
+                        break;
+                    case 't':
+                        options.setThreads(number(value(flags, i++, flag), flag));
+                        break;
+                    case 'l':
+                        options.setSolutionLimit(number(value(flags, i++, flag), flag));
+                        limited = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("illegal option " + flag);
+                }
+            }
+        }
+        options.validate();
+        return options;
+    }
+
+
+    /**
+     * Checks that the options can be used together: backjumping is only done by sequential forward checking, and
+     * restarts by sequential forward checking or MAC looking for one solution.
+     *
+     * @throws IllegalArgumentException naming the flags that cannot be combined.
+     */
+    public void validate() {
+        if (cbj && mac) {
+            throw new IllegalArgumentException("-j cannot be combined with -m");
+        }
+        if (cbj && threads > 0) {
+            throw new IllegalArgumentException("-j cannot be combined with -t");
+        }
+        if (restartPolicy != null && cbj) {
+            throw new IllegalArgumentException("-R cannot be combined with -j");
+        }
+        if (restartPolicy != null && threads > 0) {
+            throw new IllegalArgumentException("-R cannot be combined with -t");
+        }
+        if (restartPolicy != null && solutionLimit != 1) {
+            throw new IllegalArgumentException("-R looks for one solution and cannot be combined with -a, -c or -l");
+        }
+    }
+
+
+    private static String value(String[] flags, int index, char flag) {
+        if (index >= flags.length) {
+            throw new IllegalArgumentException("-" + flag + " requires a value");
+        }
+        return flags[index];
+    }
+
+
+    private static int number(String value, char flag) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0) {
+                throw new IllegalArgumentException("-" + flag + " requires a non-negative number");
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("-" + flag + " requires a number but found " + value);
+        }
+    }
+
+
+    public boolean isMac() {
+        return mac;
+    }
+
+
+    /**
+     * @param mac true for MAC, false for forward checking.
+     */
+    public void setMac(boolean mac) {
+        this.mac = mac;
+    }
+
+
+    public boolean isCbj() {
+        return cbj;
+    }
+
+
+    /**
+     * @param cbj true for forward checking with conflict-directed backjumping, which cannot be combined with MAC,
+     *            restarts or the parallel tree search.
+     */
+    public void setCbj(boolean cbj) {
+        this.cbj = cbj;
+    }
+
+
+    public boolean isDynamicOrdering() {
+        return dynamicOrdering;
+    }
+
+
+    public void setDynamicOrdering(boolean dynamicOrdering) {
+        this.dynamicOrdering = dynamicOrdering;
+    }
+
+
+    public VarHeuristic getVarHeuristic() {
+        return varHeuristic;
+    }
+
+
+    /**
+     * Selects the heuristic of dynamic variable ordering, which this turns on.
+     */
+    public void setVarHeuristic(VarHeuristic varHeuristic) {
+        this.varHeuristic = varHeuristic;
+        this.dynamicOrdering = true;
+    }
+
+
+    public ValHeuristic getValHeuristic() {
+        return valHeuristic;
+    }
+
+
+    public void setValHeuristic(ValHeuristic valHeuristic) {
+        this.valHeuristic = valHeuristic;
+    }
+
+
+    public RestartPolicy getRestartPolicy() {
+        return restartPolicy;
+    }
+
+
+    /**
+     * @param restartPolicy cutoffs of the runs of forward checking or MAC, or null to search in a single run. Only
+     *                      for a sequential search for one solution.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy) {
+        this.restartPolicy = restartPolicy;
+    }
+
+
+    public long getSeed() {
+        return seed;
+    }
+
+
+    /**
+     * @param seed seed of the random tie-breaking used with restarts.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
+    public boolean isResidualRevise() {
+        return residualRevise;
+    }
+
+
+    public void setResidualRevise(boolean residualRevise) {
+        this.residualRevise = residualRevise;
+    }
+
+
+    public boolean isDomainOrderedQueue() {
+        return domainOrderedQueue;
+    }
+
+
+    public void setDomainOrderedQueue(boolean domainOrderedQueue) {
+        this.domainOrderedQueue = domainOrderedQueue;
+    }
+
+
+    public String getPropagator() {
+        return propagator;
+    }
+
+
+    /**
+     * @param propagator propagation engine of MAC, ac3 or ac6.
+     * @throws IllegalArgumentException for any other engine.
+     */
+    public void setPropagator(String propagator) {
+        if (!propagator.equalsIgnoreCase("ac3") && !propagator.equalsIgnoreCase("ac6")) {
+            throw new IllegalArgumentException("unknown propagator " + propagator);
+        }
+        this.propagator = propagator.toLowerCase();
+    }
+
+
+    public int getThreads() {
+        return threads;
+    }
+
+
+    /**
+     * @param threads number of threads of the parallel tree search, or 0 to search sequentially.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+
+    public long getSolutionLimit() {
+        return solutionLimit;
+    }
+
+
+    /**
+     * @param solutionLimit number of solutions to look for, 0 for all of them.
+     */
+    public void setSolutionLimit(long solutionLimit) {
+        this.solutionLimit = solutionLimit;
+    }
+
+
+    public boolean isDetailedMetrics() {
+        return detailedMetrics;
+    }
+
+
+    /**
+     * @param detailedMetrics whether a sample of the revisions is timed and nodes and wipeouts are counted per depth.
+     */
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+    }
+
+
+    public boolean isPreprocess() {
+        return preprocess;
+    }
+
+
+    /**
+     * @param preprocess whether the root is made arc consistent and universal constraints are dropped before
+     *                   search. Not done for a search started from a given node.
+     */
+    public void setPreprocess(boolean preprocess) {
+        this.preprocess = preprocess;
+    }
+}
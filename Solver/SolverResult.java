@@ -0,0 +1,98 @@
+/**
+ * Outcome of one CSPSolver.solve() call: the first solution, if any, and the statistics of the search.
+ */
+public class SolverResult {
+
+    private String algorithm;
+    private int[] solution;
+    private long solutionCount;
+    private long nodeCount;
+    private long revisionCount;
+    private long searchTime;
+    private long totalTime;
+    private SearchMetrics metrics;
+
+
+    /**
+     * Class constructor
+     * @param algorithm description of the solver configuration, as given by Solver.getName().
+     * @param solution value of each variable in the first solution found, or null.
+     * @param solutionCount number of solutions found.
+     * @param nodeCount number of search tree nodes explored.
+     * @param revisionCount number of arc revisions.
+     * @param searchTime duration of the search in milliseconds.
+     * @param totalTime duration of the whole call in milliseconds, including setting up the solver.
+     * @param metrics the detailed counters of the search.
+     */
+    public SolverResult(String algorithm, int[] solution, long solutionCount, long nodeCount, long revisionCount,
+                        long searchTime, long totalTime, SearchMetrics metrics) {
+        this.algorithm = algorithm;
+        this.solution = solution;
+        this.solutionCount = solutionCount;
+        this.nodeCount = nodeCount;
+        this.revisionCount = revisionCount;
+        this.searchTime = searchTime;
+        this.totalTime = totalTime;
+        this.metrics = metrics;
+    }
+
+
+    public boolean isSatisfiable() {
+        return solution != null;
+    }
+
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+
+    /**
+     * @return value of each variable in the first solution found, or null if there is none.
+     */
+    public int[] getSolution() {
+        return solution;
+    }
+
+
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+
+    public long getRevisionCount() {
+        return revisionCount;
+    }
+
+
+    public long getSearchTime() {
+        return searchTime;
+    }
+
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+
+    /**
+     * @return the detailed counters of the search: wipeouts, backtracks, pruning, and with detailed metrics on,
+     * revision time and per-depth histograms.
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    @Override
+    public String toString() {
+        return algorithm + ": " + (isSatisfiable() ? "solution found" : "no solution") + ", solutions: "
+                + solutionCount + ", nodes: " + nodeCount + ", revisions: " + revisionCount + ", search time: "
+                + searchTime + "ms, total time: " + totalTime + "ms";
+    }
+}
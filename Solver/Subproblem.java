@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+
+
+/**
+ * An independent part of a search, produced by Decomposer: a consistent partial assignment together with the arc
+ * consistent domains it leads to. Subproblems travel as single lines of text,
+ *
+ *   <id> <assigned vars, comma separated, or -> <domain words in hexadecimal, comma separated>
+ *
+ * so that they can be written to a file or sent to a Worker process.
+ */
+public class Subproblem {
+
+    private int id;
+    // variables assigned by the decomposition
+    private int[] assignedVars;
+    // domains of all variables, in the layout of DomainStore.getWords()
+    private long[] words;
+
+
+    public Subproblem(int id, int[] assignedVars, long[] words) {
+        this.id = id;
+        this.assignedVars = assignedVars;
+        this.words = words;
+    }
+
+
+    /**
+     * Creates the search state of the subproblem, ready to be given to a solver.
+     *
+     * @param csp the instance the subproblem was taken from.
+     */
+    public Node toNode(BinaryCSP csp) {
+        boolean[] assigned = new boolean[csp.getNoVariables()];
+        for (int var : assignedVars) {
+            assigned[var] = true;
+        }
+        ArrayList<Integer> varList = new ArrayList<>();
+        for (int var = 0; var < assigned.length; var++) {
+            if (!assigned[var]) {
+                varList.add(var);
+            }
+        }
+        return new Node(csp, new DomainStore(csp, words), varList);
+    }
+
+
+    /**
+     * Parses a line written by toString().
+     *
+     * @throws IllegalArgumentException if the line is not a subproblem.
+     */
+    public static Subproblem parse(String line) {
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("malformed subproblem: " + line);
+        }
+        try {
+            int id = Integer.parseInt(fields[0]);
+            int[] assignedVars = new int[0];
+            if (!fields[1].equals("-")) {
+                String[] vars = fields[1].split(",");
+                assignedVars = new int[vars.length];
+                for (int k = 0; k < vars.length; k++) {
+                    assignedVars[k] = Integer.parseInt(vars[k]);
+                }
+            }
+            String[] hexWords = fields[2].split(",");
+            long[] words = new long[hexWords.length];
+            for (int k = 0; k < hexWords.length; k++) {
+                words[k] = Long.parseUnsignedLong(hexWords[k], 16);
+            }
+            return new Subproblem(id, assignedVars, words);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("malformed subproblem: " + line, e);
+        }
+    }
+
+
+    public int getId() {
+        return id;
+    }
+
+
+    public int[] getAssignedVars() {
+        return assignedVars;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(id).append(' ');
+        if (assignedVars.length == 0) {
+            line.append('-');
+        }
+        for (int k = 0; k < assignedVars.length; k++) {
+            line.append(k == 0 ? "" : ",").append(assignedVars[k]);
+        }
+        line.append(' ');
+        for (int k = 0; k < words.length; k++) {
+            line.append(k == 0 ? "" : ",").append(Long.toHexString(words[k]));
+        }
+        return line.toString();
+    }
+}
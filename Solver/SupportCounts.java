@@ -0,0 +1,87 @@
+/**
+ * Number of supports of every value on every arc, for value ordering: get(x, a, y) is the number of values left in
+ * D(y) that are compatible with x = a. The node keeps the counts up to date as values are deleted and restored, so
+ * they are never recomputed during search. Removing b from D(y) walks the support bitset of y = b on each constraint of
+ * y and decrements the count of every value it holds; restoring b increments them again.
+ *
+ * Counts are kept for every value of x's initial domain, deleted or not, so that a restore is the exact inverse of the
+ * matching deletion whatever happened to x in between.
+ */
+public final class SupportCounts {
+
+    private final BinaryCSP csp;
+    // counts[arcId(x, y)][a - lb(x)] is the number of supports of x = a in D(y)
+    private final int[][] counts;
+
+
+    /**
+     * Counts the supports of every value in the given domains.
+     *
+     * @param csp     instance of the binary CSP
+     * @param domains current domains of the search
+     */
+    public SupportCounts(BinaryCSP csp, DomainStore domains) {
+        this.csp = csp;
+        counts = new int[csp.getNoArcs()][];
+        long[] words = domains.getWords();
+        for (int arcId = 0; arcId < counts.length; arcId++) {
+            int x = csp.getArcFirst(arcId);
+            int y = csp.getArcSecond(arcId);
+            BinaryConstraint c = csp.getConstraint(x, y);
+            int lb = csp.getLB(x);
+            int offset = domains.getOffset(y);
+            int[] arcCounts = new int[csp.getUB(x) - lb + 1];
+            for (int a = lb; a <= csp.getUB(x); a++) {
+                long[] supports = c.getSupports(x, a);
+                int count = 0;
+                for (int w = 0; w < supports.length; w++) {
+                    count += Long.bitCount(supports[w] & words[offset + w]);
+                }
+                arcCounts[a - lb] = count;
+            }
+            counts[arcId] = arcCounts;
+        }
+    }
+
+
+    /**
+     * Copy constructor, e.g. for a snapshot of a search handed over to another thread.
+     *
+     * @param other counts to copy
+     */
+    public SupportCounts(SupportCounts other) {
+        this.csp = other.csp;
+        counts = new int[other.counts.length][];
+        for (int arcId = 0; arcId < counts.length; arcId++) {
+            counts[arcId] = other.counts[arcId].clone();
+        }
+    }
+
+
+    /**
+     * Accounts for val having been deleted from or restored to the domain of var.
+     *
+     * @param delta -1 for a deletion, 1 for a restore
+     */
+    public void update(int var, int val, int delta) {
+        for (int neighbour : csp.getNeighbours(var)) {
+            long[] supports = csp.getConstraint(var, neighbour).getSupports(var, val);
+            int[] arcCounts = counts[csp.getArcId(neighbour, var)];
+            for (int w = 0; w < supports.length; w++) {
+                long word = supports[w];
+                while (word != 0) {
+                    arcCounts[(w << 6) + Long.numberOfTrailingZeros(word)] += delta;
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of values of D(y) compatible with x = a.
+     */
+    public int get(int x, int a, int y) {
+        return counts[csp.getArcId(x, y)][a - csp.getLB(x)];
+    }
+}
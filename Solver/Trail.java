@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Undo trail for backtracking search. Records every (variable, value) deletion made on a DomainStore, and every
+ * variable assignment, so that returning to a checkpoint restores exactly what changed since it was taken.
+ */
+public final class Trail {
+
+    // value recorded for a variable leaving the unassigned list, rather than a value leaving its domain
+    public static final int ASSIGNED = Integer.MIN_VALUE;
+
+    private int[] vars = new int[256];
+    private int[] vals = new int[256];
+    private int size = 0;
+
+    // checkpoints[k] is the trail size when decision level k + 1 was entered
+    private int[] checkpoints = new int[64];
+    private int level = 0;
+
+
+    /**
+     * Records that val was deleted from the domain of var, or that var was assigned if val is ASSIGNED.
+     */
+    public void push(int var, int val) {
+        if (size == vars.length) {
+            vars = Arrays.copyOf(vars, size * 2);
+            vals = Arrays.copyOf(vals, size * 2);
+        }
+        vars[size] = var;
+        vals[size] = val;
+        size++;
+    }
+
+
+    /**
+     * Enters a new decision level.
+     */
+    public void checkpoint() {
+        if (level == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, level * 2);
+        }
+        checkpoints[level++] = size;
+    }
+
+
+    /**
+     * Leaves the current decision level, popping every entry recorded since its checkpoint. The popped entries stay
+     * readable through getVar/getVal until the next push, so the caller can undo them.
+     *
+     * @return the index of the first popped entry
+     */
+    public int backtrack() {
+        int start = checkpoints[--level];
+        size = start;
+        return start;
+    }
+
+
+    /**
+     * @return the trail size when the current decision level was entered, or 0 at the root.
+     */
+    public int getLevelStart() {
+        return level == 0 ? 0 : checkpoints[level - 1];
+    }
+
+
+    /**
+     * @return the trail size when decision level level was entered, i.e. the index of its first entry.
+     */
+    public int getCheckpoint(int level) {
+        return checkpoints[level - 1];
+    }
+
+
+    public int getLevel() {
+        return level;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int getVar(int index) {
+        return vars[index];
+    }
+
+
+    public int getVal(int index) {
+        return vals[index];
+    }
+}
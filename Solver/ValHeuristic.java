@@ -0,0 +1,49 @@
+/**
+ * Value ordering heuristics, which choose the value tried first for the selected variable. The support heuristics
+ * count, for each value a of the variable, the values of every unassigned neighbour's domain compatible with it, and
+ * take the value that leaves the most behind, ties going to the smallest value:
+ *
+ *   MIN          the smallest value of the domain.
+ *   MAX_SUPPORT  the most supports in total over all unassigned neighbours, i.e. the fewest values pruned from them.
+ *   LCV          the least-constraining value: the most supports in the neighbour it leaves with the fewest, so the
+ *                value least likely to wipe a domain out, then the most supports in total.
+ */
+public enum ValHeuristic {
+
+    MIN("min"),
+    MAX_SUPPORT("max-support"),
+    LCV("lcv");
+
+    private final String label;
+
+
+    ValHeuristic(String label) {
+        this.label = label;
+    }
+
+
+    /**
+     * @param name min, maxsupport or lcv, in any case.
+     * @throws IllegalArgumentException for any other name.
+     */
+    public static ValHeuristic parse(String name) {
+        switch (name.toLowerCase()) {
+            case "min":
+                return MIN;
+            case "maxsupport":
+                return MAX_SUPPORT;
+            case "lcv":
+                return LCV;
+            default:
+                throw new IllegalArgumentException("unknown value ordering " + name);
+        }
+    }
+
+
+    /**
+     * @return short description for output, e.g. in a solver's name.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
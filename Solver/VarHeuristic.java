@@ -0,0 +1,49 @@
+/**
+ * Dynamic variable ordering heuristics. Each picks the unassigned variable with the smallest ratio, ties going to the
+ * lowest index:
+ *
+ *   DOM       the size of its domain.
+ *   DOM_DEG   the size of its domain over the number of constraints it shares with unassigned variables.
+ *   DOM_WDEG  the size of its domain over the sum of the weights of those constraints. A constraint's weight starts
+ *             at 1 and goes up by one every time propagating it wipes out a domain, so search is drawn to the
+ *             variables of the constraints that have failed most often so far.
+ */
+public enum VarHeuristic {
+
+    DOM("dynamic"),
+    DOM_DEG("dom/deg"),
+    DOM_WDEG("dom/wdeg");
+
+    private final String label;
+
+
+    VarHeuristic(String label) {
+        this.label = label;
+    }
+
+
+    /**
+     * @param name dom, domdeg or domwdeg, in any case.
+     * @throws IllegalArgumentException for any other name.
+     */
+    public static VarHeuristic parse(String name) {
+        switch (name.toLowerCase()) {
+            case "dom":
+                return DOM;
+            case "domdeg":
+                return DOM_DEG;
+            case "domwdeg":
+                return DOM_WDEG;
+            default:
+                throw new IllegalArgumentException("unknown variable ordering " + name);
+        }
+    }
+
+
+    /**
+     * @return short description for output, e.g. in a solver's name.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The unassigned variables of a search, bucketed by current domain size so that the next variable is chosen without
+ * scanning or sorting all of them. Bucket s is a bitset over the variables whose domain holds s values: a variable
+ * moves between buckets in O(1) when a value of its domain is deleted or restored, and the smallest-domain variable is
+ * the first bit of the smallest non-empty bucket, so ties still go to the lowest index. A second bitset holds every
+ * unassigned variable for static ordering.
+ *
+ * The smallest non-empty bucket and the first unassigned variable are tracked by cursors that only ever move down
+ * when a variable is added or shrinks, and are moved up lazily when selecting, so after a backtrack they are simply
+ * left pointing at the variables that came back.
+ */
+public final class VariableBuckets {
+
+    // bucket of an assigned variable
+    private static final int NONE = -1;
+
+    private final int words;
+    // buckets[size] holds the unassigned variables with that domain size
+    private final long[][] buckets;
+    private final int[] counts;
+    // bucket of each variable, NONE once assigned
+    private final int[] bucketOf;
+    private final long[] unassigned;
+    private int noUnassigned;
+    // no bucket below minBucket is non-empty, and no variable below firstVar is unassigned
+    private int minBucket;
+    private int firstVar;
+
+
+    /**
+     * Creates the buckets with every variable of the CSP assigned; variables are then added with add().
+     *
+     * @param csp instance of the binary CSP, whose bounds give the largest domain
+     */
+    public VariableBuckets(BinaryCSP csp) {
+        int n = csp.getNoVariables();
+        int maxSize = 0;
+        for (int var = 0; var < n; var++) {
+            maxSize = Math.max(maxSize, csp.getUB(var) - csp.getLB(var) + 1);
+        }
+        words = (n + 63) >> 6;
+        buckets = new long[maxSize + 1][words];
+        counts = new int[maxSize + 1];
+        bucketOf = new int[n];
+        Arrays.fill(bucketOf, NONE);
+        unassigned = new long[words];
+        minBucket = counts.length;
+        firstVar = n;
+    }
+
+
+    /**
+     * Makes var unassigned, with the given domain size.
+     */
+    public void add(int var, int size) {
+        bucketOf[var] = size;
+        buckets[size][var >> 6] |= 1L << var;
+        counts[size]++;
+        unassigned[var >> 6] |= 1L << var;
+        noUnassigned++;
+        minBucket = Math.min(minBucket, size);
+        firstVar = Math.min(firstVar, var);
+    }
+
+
+    /**
+     * Makes var assigned.
+     */
+    public void remove(int var) {
+        int size = bucketOf[var];
+        if (size == NONE) {
+            return;
+        }
+        buckets[size][var >> 6] &= ~(1L << var);
+        counts[size]--;
+        unassigned[var >> 6] &= ~(1L << var);
+        noUnassigned--;
+        bucketOf[var] = NONE;
+    }
+
+
+    /**
+     * Moves var to the bucket of its new domain size. Does nothing if var is assigned, as its domain no longer counts.
+     */
+    public void resize(int var, int size) {
+        int old = bucketOf[var];
+        if (old == NONE || old == size) {
+            return;
+        }
+        long bit = 1L << var;
+        buckets[old][var >> 6] &= ~bit;
+        counts[old]--;
+        buckets[size][var >> 6] |= bit;
+        counts[size]++;
+        bucketOf[var] = size;
+        if (size < minBucket) {
+            minBucket = size;
+        }
+    }
+
+
+    /**
+     * @return the unassigned variable with the smallest domain, the lowest index on ties, or -1 if there is none.
+     */
+    public int smallest() {
+        while (minBucket < counts.length && counts[minBucket] == 0) {
+            minBucket++;
+        }
+        if (minBucket == counts.length) {
+            return -1;
+        }
+        return firstBit(buckets[minBucket], 0);
+    }
+
+
+    /**
+     * @return an unassigned variable with the smallest domain, drawn uniformly at random among those tied, or -1 if
+     * there is none.
+     */
+    public int smallest(Random random) {
+        if (smallest() == -1) {
+            return -1;
+        }
+        long[] bucket = buckets[minBucket];
+        int skip = random.nextInt(counts[minBucket]);
+        for (int w = 0; w < words; w++) {
+            int bits = Long.bitCount(bucket[w]);
+            if (skip < bits) {
+                long word = bucket[w];
+                for (; skip > 0; skip--) {
+                    word &= word - 1;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            skip -= bits;
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return the unassigned variable with the lowest index, or -1 if there is none.
+     */
+    public int first() {
+        int var = firstBit(unassigned, firstVar >> 6);
+        firstVar = var == -1 ? bucketOf.length : var;
+        return var;
+    }
+
+
+    /**
+     * Goes through the unassigned variables in increasing order, like DomainStore.nextValue does through a domain.
+     *
+     * @return the lowest unassigned variable that is at least from, or -1 if there is none.
+     */
+    public int next(int from) {
+        if (from >= bucketOf.length) {
+            return -1;
+        }
+        int w = from >> 6;
+        long word = unassigned[w] & (-1L << from);
+        if (word != 0) {
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return firstBit(unassigned, w + 1);
+    }
+
+
+    /**
+     * @return whether every variable is assigned.
+     */
+    public boolean isEmpty() {
+        return noUnassigned == 0;
+    }
+
+
+    /**
+     * @return the number of unassigned variables.
+     */
+    public int size() {
+        return noUnassigned;
+    }
+
+
+    private int firstBit(long[] bits, int fromWord) {
+        for (int w = fromWord; w < words; w++) {
+            if (bits[w] != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits[w]);
+            }
+        }
+        return -1;
+    }
+}
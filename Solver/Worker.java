@@ -0,0 +1,85 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Worker process of the embarrassingly parallel search, normally started by Coordinator. It connects to the coordinator
+ * on the local machine and solves the subproblems it is sent, one at a time, until there are no more. Usage:
+ *
+ *   java Worker <csp_filename> <port> [-m] [-d] [-r] [-q] [-p ac3|ac6]
+ *
+ * where the flags select the solver as for Main.
+ */
+public class Worker {
+
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java Worker <csp_filename> <port> [-m] [-d] [-r] [-q] [-p ac3|ac6]");
+            System.exit(2);
+        }
+        String file = args[0];
+        int port = Integer.parseInt(args[1]);
+
+        CSPSolver cspSolver;
+        try {
+            cspSolver = new CSPSolver(SolverOptions.parse(Arrays.copyOfRange(args, 2, args.length)));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Worker: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        try {
+            BinaryCSP csp = CSPSolver.read(file);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedReader in = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(
+                         new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), true)) {
+                out.println(Coordinator.READY);
+                String line;
+                while ((line = in.readLine()) != null && line.startsWith(Coordinator.SUBPROBLEM)) {
+                    Subproblem subproblem = Subproblem.parse(line.substring(Coordinator.SUBPROBLEM.length()));
+                    Solver solver = cspSolver.createSolver(csp, subproblem.toNode(csp));
+                    solver.search();
+                    out.println(resultLine(subproblem, solver));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Worker: " + e);
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Formats the outcome of a subproblem as
+     *
+     *   RESULT <id> SAT|UNSAT <nodes> <revisions> <ms> <values of the solution, comma separated, or ->
+     */
+    private static String resultLine(Subproblem subproblem, Solver solver) {
+        int[] solution = solver.getSolution();
+        StringBuilder line = new StringBuilder(Coordinator.RESULT);
+        line.append(subproblem.getId())
+                .append(solution != null ? " SAT " : " UNSAT ")
+                .append(solver.getNodeCount()).append(' ')
+                .append(solver.getRevisionCount()).append(' ')
+                .append(solver.getElapsedTime()).append(' ');
+        if (solution == null) {
+            line.append('-');
+        } else {
+            for (int var = 0; var < solution.length; var++) {
+                line.append(var == 0 ? "" : ",").append(solution[var]);
+            }
+        }
+        return line.toString();
+    }
+}
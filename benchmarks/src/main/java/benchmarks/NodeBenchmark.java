@@ -0,0 +1,132 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static benchmarks.SolverHandles.*;
+
+/**
+ * The building blocks of search, measured at the root node of each instance: revising and checking every arc, creating
+ * and copying a node, and the AC3 fixpoint after a first decision. Benchmarks that change the node undo their changes
+ * with pushLevel() and popLevel(), whose cost is included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NodeBenchmark {
+
+    @Param({"8Queens", "20Queens", "langfords3_10", "FinnishSudoku"})
+    public String instance;
+
+    private Object csp;
+    private Object domains;
+    private ArrayList<Integer> varList;
+    private Object root;
+    // both ends of every arc, and the smallest value of each end
+    private int[] arcFirst;
+    private int[] arcSecond;
+    private int[] firstLB;
+    private int[] secondLB;
+    private int firstValue;
+
+
+    @Setup
+    public void setup() throws Throwable {
+        csp = read(instance);
+        domains = (Object) NEW_DOMAINS.invokeExact(csp);
+        varList = allVariables(csp);
+        root = rootNode(csp);
+        int noArcs = (int) NO_ARCS.invokeExact(csp);
+        arcFirst = new int[noArcs];
+        arcSecond = new int[noArcs];
+        firstLB = new int[noArcs];
+        secondLB = new int[noArcs];
+        for (int arcId = 0; arcId < noArcs; arcId++) {
+            arcFirst[arcId] = (int) ARC_FIRST.invokeExact(csp, arcId);
+            arcSecond[arcId] = (int) ARC_SECOND.invokeExact(csp, arcId);
+            firstLB[arcId] = (int) LB.invokeExact(csp, arcFirst[arcId]);
+            secondLB[arcId] = (int) LB.invokeExact(csp, arcSecond[arcId]);
+        }
+        firstValue = (int) SELECT_VAL.invokeExact(root, 0);
+    }
+
+
+    /**
+     * Revises every arc of the root node once.
+     * @return number of revisions that deleted a value.
+     */
+    @Benchmark
+    public int reviseAllArcs() throws Throwable {
+        int changed = 0;
+        PUSH_LEVEL.invokeExact(root);
+        try {
+            for (int arcId = 0; arcId < arcFirst.length; arcId++) {
+                if ((boolean) REVISE.invokeExact(root, arcFirst[arcId], arcSecond[arcId])) {
+                    changed++;
+                }
+            }
+        } finally {
+            // a revise that wipes out a domain throws, and its deletions must still be undone for the next call
+            POP_LEVEL.invokeExact(root);
+        }
+        return changed;
+    }
+
+
+    /**
+     * Checks one pair of values, the smallest of each variable, against the constraint of every arc.
+     * @return number of pairs allowed.
+     */
+    @Benchmark
+    public int satisfiesAllArcs() throws Throwable {
+        int allowed = 0;
+        for (int arcId = 0; arcId < arcFirst.length; arcId++) {
+            if ((boolean) SATISFIES.invokeExact(root, arcFirst[arcId], firstLB[arcId], arcSecond[arcId],
+                    secondLB[arcId])) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+
+    @Benchmark
+    public Object newNode() throws Throwable {
+        return (Object) NEW_NODE.invokeExact(csp, domains, varList);
+    }
+
+
+    @Benchmark
+    public Object copyNode() throws Throwable {
+        return (Object) COPY_NODE.invokeExact(root);
+    }
+
+
+    /**
+     * Assigns the first variable its smallest value and runs AC3 to a fixpoint from it.
+     * @return whether the assignment is arc consistent.
+     */
+    @Benchmark
+    public boolean ac3Fixpoint() throws Throwable {
+        PUSH_LEVEL.invokeExact(root);
+        ASSIGN.invokeExact(root, 0, firstValue);
+        boolean consistent = (boolean) AC3.invokeExact(root, 0);
+        POP_LEVEL.invokeExact(root);
+        return consistent;
+    }
+}
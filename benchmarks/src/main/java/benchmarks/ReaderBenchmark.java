@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static benchmarks.SolverHandles.*;
+
+/**
+ * Loading an instance from its text file with BinaryCSPReader, i.e. parsing and building the constraint bitsets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReaderBenchmark {
+
+    @Param({"4Queens", "8Queens", "10Queens", "14Queens", "20Queens", "langfords2_4", "langfords3_10",
+            "SimonisSudoku", "FinnishSudoku"})
+    public String instance;
+
+    private String file;
+
+
+    @Setup
+    public void setup() {
+        file = instanceFile(instance);
+    }
+
+
+    @Benchmark
+    public Object load() throws Throwable {
+        return (Object) READ_TEXT.invokeExact((Object) NEW_READER.invokeExact(), file);
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static benchmarks.SolverHandles.*;
+
+/**
+ * Complete searches for a first solution, from the full domains, through CSPSolver. The instance is read once; each
+ * solve sets up a new solver and search state, as CSPSolver.solve() does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SolveBenchmark {
+
+    @Param({"4Queens", "8Queens", "10Queens", "14Queens", "20Queens", "langfords2_3", "langfords2_4",
+            "langfords3_9", "langfords3_10", "SimonisSudoku", "FinnishSudoku"})
+    public String instance;
+
+    @Param({"fc", "mac"})
+    public String algorithm;
+
+    @Param({"static", "dynamic"})
+    public String ordering;
+
+    private Object csp;
+    private Object solver;
+
+
+    @Setup
+    public void setup() throws Throwable {
+        csp = read(instance);
+        String flags = (algorithm.equals("mac") ? "m" : "") + (ordering.equals("dynamic") ? "d" : "");
+        String[] options = flags.isEmpty() ? new String[0] : new String[]{"-" + flags};
+        solver = (Object) NEW_SOLVER.invokeExact(options);
+    }
+
+
+    /**
+     * @return the SolverResult, so that the search cannot be optimised away.
+     */
+    @Benchmark
+    public Object solve() throws Throwable {
+        return (Object) SOLVE.invokeExact(solver, csp);
+    }
+}
@@ -0,0 +1,143 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Access to the solver's classes. They live in the default package, which JMH does not allow benchmarks in and which
+ * code in a named package cannot import, so they are reached through method handles instead. Every handle is a static
+ * final constant with its solver types erased to Object, which the JIT inlines like a direct call.
+ */
+final class SolverHandles {
+
+    // directory holding the bundled instances, relative to where the benchmarks are run from
+    static final String CSP_DIR = System.getProperty("csp.dir", "Solver");
+
+    static final MethodHandle READ;
+    static final MethodHandle NEW_READER;
+    static final MethodHandle READ_TEXT;
+    static final MethodHandle NEW_SOLVER;
+    static final MethodHandle SOLVE;
+    static final MethodHandle NO_VARIABLES;
+    static final MethodHandle NO_ARCS;
+    static final MethodHandle ARC_FIRST;
+    static final MethodHandle ARC_SECOND;
+    static final MethodHandle LB;
+    static final MethodHandle NEW_DOMAINS;
+    static final MethodHandle NEW_NODE;
+    static final MethodHandle COPY_NODE;
+    static final MethodHandle PUSH_LEVEL;
+    static final MethodHandle POP_LEVEL;
+    static final MethodHandle ASSIGN;
+    static final MethodHandle SELECT_VAL;
+    static final MethodHandle REVISE;
+    static final MethodHandle SATISFIES;
+    static final MethodHandle AC3;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> csp = Class.forName("BinaryCSP");
+            Class<?> reader = Class.forName("BinaryCSPReader");
+            Class<?> cspSolver = Class.forName("CSPSolver");
+            Class<?> options = Class.forName("SolverOptions");
+            Class<?> domains = Class.forName("DomainStore");
+            Class<?> node = Class.forName("Node");
+
+            READ = erase(lookup.findStatic(cspSolver, "read", MethodType.methodType(csp, String.class)));
+            NEW_READER = erase(lookup.findConstructor(reader, MethodType.methodType(void.class)));
+            READ_TEXT = erase(lookup.findVirtual(reader, "readBinaryCSP", MethodType.methodType(csp, String.class)));
+            MethodHandle parse = lookup.findStatic(options, "parse", MethodType.methodType(options, String[].class));
+            NEW_SOLVER = erase(MethodHandles.filterArguments(
+                    lookup.findConstructor(cspSolver, MethodType.methodType(void.class, options)), 0, parse));
+            SOLVE = erase(lookup.findVirtual(cspSolver, "solve",
+                    MethodType.methodType(Class.forName("SolverResult"), csp)));
+
+            NO_VARIABLES = erase(lookup.findVirtual(csp, "getNoVariables", MethodType.methodType(int.class)));
+            NO_ARCS = erase(lookup.findVirtual(csp, "getNoArcs", MethodType.methodType(int.class)));
+            ARC_FIRST = erase(lookup.findVirtual(csp, "getArcFirst", MethodType.methodType(int.class, int.class)));
+            ARC_SECOND = erase(lookup.findVirtual(csp, "getArcSecond", MethodType.methodType(int.class, int.class)));
+            LB = erase(lookup.findVirtual(csp, "getLB", MethodType.methodType(int.class, int.class)));
+
+            NEW_DOMAINS = erase(lookup.findConstructor(domains, MethodType.methodType(void.class, csp)));
+            NEW_NODE = erase(lookup.findConstructor(node,
+                    MethodType.methodType(void.class, csp, domains, ArrayList.class)));
+            COPY_NODE = erase(lookup.findConstructor(node, MethodType.methodType(void.class, node)));
+            PUSH_LEVEL = erase(lookup.findVirtual(node, "pushLevel", MethodType.methodType(void.class)));
+            POP_LEVEL = erase(lookup.findVirtual(node, "popLevel", MethodType.methodType(void.class)));
+            ASSIGN = erase(lookup.findVirtual(node, "assign",
+                    MethodType.methodType(void.class, int.class, int.class)));
+            SELECT_VAL = erase(lookup.findVirtual(node, "selectVal", MethodType.methodType(int.class, int.class)));
+            REVISE = erase(lookup.findVirtual(node, "revise",
+                    MethodType.methodType(boolean.class, int.class, int.class)));
+            SATISFIES = erase(lookup.findVirtual(node, "satisfies",
+                    MethodType.methodType(boolean.class, int.class, int.class, int.class, int.class)));
+            AC3 = erase(lookup.findVirtual(node, "ac3", MethodType.methodType(boolean.class, int.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    private SolverHandles() {
+    }
+
+
+    /**
+     * Replaces the solver's own classes in a handle's type by Object, so that it can be invoked exactly from here.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isSolverClass(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isSolverClass(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+
+    private static boolean isSolverClass(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+
+
+    /**
+     * @return the path of a bundled instance, e.g. 8Queens.
+     */
+    static String instanceFile(String instance) {
+        return Paths.get(CSP_DIR, instance + ".csp").toString();
+    }
+
+
+    /**
+     * Reads a bundled instance.
+     */
+    static Object read(String instance) throws Throwable {
+        return (Object) READ.invokeExact(instanceFile(instance));
+    }
+
+
+    /**
+     * @return a root node with the full domains and every variable unassigned.
+     */
+    static Object rootNode(Object csp) throws Throwable {
+        return (Object) NEW_NODE.invokeExact(csp, (Object) NEW_DOMAINS.invokeExact(csp), allVariables(csp));
+    }
+
+
+    static ArrayList<Integer> allVariables(Object csp) throws Throwable {
+        int noVariables = (int) NO_VARIABLES.invokeExact(csp);
+        ArrayList<Integer> varList = new ArrayList<>(noVariables);
+        for (int var = 0; var < noVariables; var++) {
+            varList.add(var);
+        }
+        return varList;
+    }
+}